@@ -1,8 +1,9 @@
 package com.shariqparwez.async;
 
+import com.shariqparwez.executor.ExecutorFactory;
+
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Supplier;
 
 public class CompletableFutureWithSupplier {
@@ -68,7 +69,7 @@ public class CompletableFutureWithSupplier {
 
     private static void asyncOperationThree() {
         // Build executor, having single thread in pool
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = ExecutorFactory.newSingleThreadExecutor("supplier-three");
 
         // Create supplier with thread sleep
         Supplier<String> supplier = () -> {
@@ -94,7 +95,7 @@ public class CompletableFutureWithSupplier {
 
     private static void asyncOperationFour() {
         // Build executor, having single thread in pool
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = ExecutorFactory.newSingleThreadExecutor("supplier-four");
 
         // Create supplier with thread sleep
         Supplier<String> supplier = () -> {
@@ -123,7 +124,7 @@ public class CompletableFutureWithSupplier {
 
     private static void asyncOperationFive() {
         // Build executor, having single thread in pool
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = ExecutorFactory.newSingleThreadExecutor("supplier-five");
 
         // Create supplier with thread sleep
         Supplier<String> supplier = () -> {
@@ -158,7 +159,7 @@ public class CompletableFutureWithSupplier {
 
     private static void asyncOperationSix() {
         // Build executor, having single thread in pool
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = ExecutorFactory.newSingleThreadExecutor("supplier-six");
 
         // Create supplier with thread sleep
         Supplier<String> supplier = () -> {
@@ -193,7 +194,7 @@ public class CompletableFutureWithSupplier {
 
     private static void asyncOperationSeven() {
         // Build executor, having single thread in pool
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = ExecutorFactory.newSingleThreadExecutor("supplier-seven");
 
         // Create supplier with thread sleep
         Supplier<String> supplier = () -> {
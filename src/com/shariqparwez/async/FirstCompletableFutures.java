@@ -1,8 +1,9 @@
 package com.shariqparwez.async;
 
+import com.shariqparwez.executor.ExecutorFactory;
+
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class FirstCompletableFutures {
     public static void main(String[] args) throws InterruptedException {
@@ -28,7 +29,7 @@ public class FirstCompletableFutures {
 
     private static void asyncOperationTwo() throws InterruptedException {
         // Build executor, having single thread in pool
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = ExecutorFactory.newSingleThreadExecutor("first-futures-two");
 
         // Create runnable task
         Runnable task = () -> System.out.println("I am running asynchronously in the thread " +
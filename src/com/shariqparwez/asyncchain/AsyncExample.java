@@ -1,18 +1,39 @@
 package com.shariqparwez.asyncchain;
 
+import com.shariqparwez.executor.ExecutionMode;
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.executor.PriorityExecutor;
+import com.shariqparwez.executor.TaskPriority;
+import com.shariqparwez.flow.FlowPipeline;
+import com.shariqparwez.log.AsyncLogSink;
+import com.shariqparwez.model.IdBatch;
 import com.shariqparwez.model.User;
-
+import com.shariqparwez.model.UserBatch;
+import com.shariqparwez.pipeline.PipelineRunner;
+import com.shariqparwez.pipeline.PipelineScheduler;
+import com.shariqparwez.resilience.RateLimiter;
+import com.shariqparwez.store.MappedResultStore;
+import com.shariqparwez.trace.StageTracer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class AsyncExample {
+    // Every line goes through the async sink instead of locking System.out, so none is written out of order
+    private static final AsyncLogSink LOG = AsyncLogSink.stdout();
+
     public static void main(String[] args) {
         // ## 1 -  Sample demonstration of chaining different tasks
         //asyncChainOperationOne();
@@ -25,10 +46,37 @@ public class AsyncExample {
 
         // ## 4 - Sample demonstration of chaining different task in Asynchronous way
         // Checking which thread sync composition is executed
-        asyncChainOperationFour();
+        //asyncChainOperationFour();
+
+        // ## 5 - Sample demonstration of chaining tasks passing primitive id batches instead of List<Long>
+        //asyncChainOperationFive();
+
+        // ## 6 - Sample demonstration of tracing which thread and executor each stage runs in, under load
+        //asyncChainOperationSix();
+
+        // ## 7 - Sample demonstration of streaming ids in chunks through Flow stages with backpressure
+        //asyncChainOperationSeven();
+
+        // ## 8 - Sample demonstration of letting a scheduler pick the thread of each stage
+        //asyncChainOperationEight();
+
+        // ## 9 - Sample demonstration of chaining tasks over a columnar user batch, no User object per record
+        //asyncChainOperationNine();
+
+        // ## 10 - Sample demonstration of persisting fetched users so that a restarted chain skips them
+        //asyncChainOperationTen();
+
+        // ## 11 - Sample demonstration of an interactive pipeline overtaking queued bulk pipelines
+        //asyncChainOperationEleven();
+
+        // ## 12 - Sample demonstration of throttling the supplier to a steady rate instead of all at once
+        asyncChainOperationTwelve();
     }
 
     private static void asyncChainOperationOne() {
+        // Create runner which tracks the pipeline
+        PipelineRunner runner = new PipelineRunner();
+
         // Create Supplier to supply list of IDs
         Supplier<List<Long>> supplyIDs = () -> {
             sleep(200);
@@ -42,22 +90,27 @@ public class AsyncExample {
         };
 
         // Create Consumer to display list of user
-        Consumer<List<User>> displayer = users -> users.forEach(System.out::println);
+        Consumer<List<User>> displayer = users -> users.forEach(LOG::log);
 
         // Create completable future for supplyIds (supplier) task
-        CompletableFuture<List<Long>> completableFuture = CompletableFuture.supplyAsync(supplyIDs);
+        // Blocking stage runs on the executor picked by -Dpipeline.execution.mode
+        CompletableFuture<List<Long>> completableFuture =
+                CompletableFuture.supplyAsync(supplyIDs, ExecutionMode.blockingStages());
 
         // Chain fetchUsers (function) and displayer (consumer) task to completable future
-        completableFuture.thenApply(fetchUsers)
-                .thenAccept(displayer);
+        runner.track(completableFuture.thenApply(fetchUsers)
+                .thenAccept(displayer));
 
-        // Giving the time for asynchronous activities to complete by making main thread to sleep
-        sleep(1_000);
+        // Wait for the pipeline to finish, exactly as long as the work takes
+        runner.shutdown(Duration.ofSeconds(5));
     }
 
     private static void asyncChainOperationTwo() {
+        // Create runner which tracks the pipeline and owns its executor
+        PipelineRunner runner = new PipelineRunner();
+
         // Create Executor for pool of single thread
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = runner.own(ExecutorFactory.newSingleThreadExecutor("async-chain-two"));
 
         // Create Supplier to supply list of IDs
         Supplier<List<Long>> supplyIDs = () -> {
@@ -73,28 +126,30 @@ public class AsyncExample {
 
         // Create Consumer to display list of user
         Consumer<List<User>> displayer = users -> {
-            System.out.println("Running in " + Thread.currentThread().getName());
-            users.forEach(System.out::println);
+            LOG.log("Running in " + Thread.currentThread().getName());
+            users.forEach(LOG::log);
         };
 
         // Create completable future for supplyIds (supplier) task
-        CompletableFuture<List<Long>> completableFuture = CompletableFuture.supplyAsync(supplyIDs);
+        // Blocking stage runs on the executor picked by -Dpipeline.execution.mode
+        CompletableFuture<List<Long>> completableFuture =
+                CompletableFuture.supplyAsync(supplyIDs, ExecutionMode.blockingStages());
 
         // Chain fetchUsers (function) and displayer (consumer) task to completable future
         // Displayer task to be executed through executor
-        completableFuture.thenApply(fetchUsers)
-                .thenAcceptAsync(displayer, executor);
-
-        // Giving the time for asynchronous activities to complete by making main thread to sleep
-        sleep(1_000);
+        runner.track(completableFuture.thenApply(fetchUsers)
+                .thenAcceptAsync(displayer, executor));
 
-        // Close executor so that JVM can terminate
-        executor.shutdown();
+        // Wait for the pipeline to finish, then close executor so that JVM can terminate
+        runner.shutdown(Duration.ofSeconds(5));
     }
 
     private static void asyncChainOperationThree() {
+        // Create runner which tracks the pipeline and owns its executor
+        PipelineRunner runner = new PipelineRunner();
+
         // Create Executor for pool of single thread
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = runner.own(ExecutorFactory.newSingleThreadExecutor("async-chain-three"));
 
         // Create Supplier to supply list of IDs
         Supplier<List<Long>> supplyIDs = () -> {
@@ -107,7 +162,7 @@ public class AsyncExample {
             sleep(300);
             Supplier<List<User>> userSupplier =
                     () -> {
-                        System.out.println("Currently running in " + Thread.currentThread().getName());
+                        LOG.log("Currently running in " + Thread.currentThread().getName());
                         return ids.stream().map(User::new).collect(Collectors.toList());
                     };
             return CompletableFuture.supplyAsync(userSupplier);
@@ -115,30 +170,32 @@ public class AsyncExample {
 
         // Create Consumer to display list of user
         Consumer<List<User>> displayer = users -> {
-            System.out.println("Running in " + Thread.currentThread().getName());
-            users.forEach(System.out::println);
+            LOG.log("Running in " + Thread.currentThread().getName());
+            users.forEach(LOG::log);
         };
 
         // Create completable future for supplyIds (supplier) task
-        CompletableFuture<List<Long>> completableFuture = CompletableFuture.supplyAsync(supplyIDs);
+        // Blocking stage runs on the executor picked by -Dpipeline.execution.mode
+        CompletableFuture<List<Long>> completableFuture =
+                CompletableFuture.supplyAsync(supplyIDs, ExecutionMode.blockingStages());
 
         // Chain fetchUsers (function) and displayer (consumer) task to completable future
         // Displayer task to be executed through executor
         // Usage of thenCompose to run asynchronously
-        completableFuture.thenCompose(fetchUsers)
-                .thenAcceptAsync(displayer, executor);
-
-        // Giving the time for asynchronous activities to complete by making main thread to sleep
-        sleep(1_000);
+        runner.track(completableFuture.thenCompose(fetchUsers)
+                .thenAcceptAsync(displayer, executor));
 
-        // Close executor so that JVM can terminate
-        executor.shutdown();
+        // Wait for the pipeline to finish, then close executor so that JVM can terminate
+        runner.shutdown(Duration.ofSeconds(5));
     }
 
     private static void asyncChainOperationFour() {
+        // Create runner which tracks the pipeline and owns its executors
+        PipelineRunner runner = new PipelineRunner();
+
         // Create separate Executors for pool of single thread
-        ExecutorService executorOne = Executors.newSingleThreadExecutor();
-        ExecutorService executorTwo = Executors.newSingleThreadExecutor();
+        ExecutorService executorOne = runner.own(ExecutorFactory.newSingleThreadExecutor("async-chain-four-one"));
+        ExecutorService executorTwo = runner.own(ExecutorFactory.newSingleThreadExecutor("async-chain-four-two"));
 
         // Create Supplier to supply list of IDs
         Supplier<List<Long>> supplyIDs = () -> {
@@ -150,10 +207,10 @@ public class AsyncExample {
         // userSupplier task to be executed through executor
         Function<List<Long>, CompletableFuture<List<User>>> fetchUsers = ids -> {
             sleep(300);
-            System.out.println("Function is currently running in " + Thread.currentThread().getName());
+            LOG.log("Function is currently running in " + Thread.currentThread().getName());
             Supplier<List<User>> userSupplier =
                     () -> {
-                        System.out.println("Currently running in " + Thread.currentThread().getName());
+                        LOG.log("Currently running in " + Thread.currentThread().getName());
                         return ids.stream().map(User::new).collect(Collectors.toList());
                     };
             return CompletableFuture.supplyAsync(userSupplier, executorTwo);
@@ -161,26 +218,313 @@ public class AsyncExample {
 
         // Create Consumer to display list of user
         Consumer<List<User>> displayer = users -> {
-            System.out.println("Running in " + Thread.currentThread().getName());
-            users.forEach(System.out::println);
+            LOG.log("Running in " + Thread.currentThread().getName());
+            users.forEach(LOG::log);
         };
 
         // Create completable future for supplyIds (supplier) task
-        CompletableFuture<List<Long>> completableFuture = CompletableFuture.supplyAsync(supplyIDs);
+        // Blocking stage runs on the executor picked by -Dpipeline.execution.mode
+        CompletableFuture<List<Long>> completableFuture =
+                CompletableFuture.supplyAsync(supplyIDs, ExecutionMode.blockingStages());
 
         // Chain fetchUsers (function) and displayer (consumer) task to completable future
         // Displayer task to be executed through executor
         // Usage of thenCompose to run asynchronously
         // Function task to be executed through executor
-        completableFuture.thenComposeAsync(fetchUsers, executorTwo)
-                .thenAcceptAsync(displayer, executorOne);
+        runner.track(completableFuture.thenComposeAsync(fetchUsers, executorTwo)
+                .thenAcceptAsync(displayer, executorOne));
+
+        // Wait for the pipeline to finish, exactly as long as the work takes
+        awaitQuiescence(runner);
+
+        // Print queue depth, active threads and wait/run time of both executors
+        ExecutorFactory.printMetrics(LOG::log);
+
+        // Close executors so that JVM can terminate
+        runner.shutdown(Duration.ofSeconds(5));
+    }
+
+    private static void asyncChainOperationFive() {
+        // Create Supplier to supply batch of IDs, backed by long[] so no id is boxed
+        Supplier<IdBatch> supplyIDs = () -> {
+            sleep(200);
+            return IdBatch.of(1L, 2L, 3L);
+        };
+
+        // Create Function to build all users of the batch in one go
+        Function<IdBatch, User[]> fetchUsers = ids -> {
+            sleep(300);
+            return ids.toUsers();
+        };
 
-        // Giving the time for asynchronous activities to complete by making main thread to sleep
-        sleep(1_000);
+        // Create Consumer to display array of user
+        Consumer<User[]> displayer = users -> {
+            for (User user : users) {
+                LOG.log(user);
+            }
+        };
+
+        // Create completable future for supplyIds (supplier) task and chain the other tasks
+        CompletableFuture.supplyAsync(supplyIDs, ExecutionMode.blockingStages())
+                .thenApply(fetchUsers)
+                .thenAccept(displayer)
+                .join();
+    }
+
+    private static void asyncChainOperationSix() {
+        // Enable tracing for this demo, usually done with -Dstage.trace.enabled=true
+        StageTracer.setEnabled(true);
+
+        // Create runner which tracks the pipelines and owns their executors
+        PipelineRunner runner = new PipelineRunner();
+        ExecutorService fetchExecutor = runner.own(ExecutorFactory.newExecutor("async-chain-six-fetch", 2));
+        ExecutorService displayExecutor =
+                runner.own(ExecutorFactory.newSingleThreadExecutor("async-chain-six-display"));
+
+        // Create Supplier, Function and Consumer, none of them prints its thread any more
+        Supplier<List<Long>> supplyIDs = () -> {
+            sleep(2);
+            return Arrays.asList(1L, 2L, 3L);
+        };
+        Function<List<Long>, List<User>> fetchUsers = ids -> {
+            sleep(3);
+            return ids.stream().map(User::new).collect(Collectors.toList());
+        };
+        Function<List<User>, Long> countUsers = users -> (long) users.size();
+        Consumer<Long> displayer = count -> {
+        };
+
+        // Wrap every executor (or in-thread task) with the name of its stage, once, when the chain is built
+        Executor supplyStage = StageTracer.executor("supply", ExecutionMode.blockingStages());
+        Executor fetchStage = StageTracer.executor("fetch", fetchExecutor);
+        Executor displayStage = StageTracer.executor("display", displayExecutor);
+        Function<List<User>, Long> countStage = StageTracer.function("count", countUsers);
+
+        // Run 200 chains at once
+        for (int i = 0; i < 200; i++) {
+            runner.track(CompletableFuture.supplyAsync(supplyIDs, supplyStage)
+                    .thenApplyAsync(fetchUsers, fetchStage)
+                    .thenApply(countStage)
+                    .thenAcceptAsync(displayer, displayStage));
+        }
+        awaitQuiescence(runner);
+
+        // Export queue wait, run time and threads of every stage
+        LOG.log(StageTracer.toPrometheus());
+        LOG.log(StageTracer.toJson());
+
+        // Close executors so that JVM can terminate
+        runner.shutdown(Duration.ofSeconds(5));
+    }
+
+    private static void asyncChainOperationSeven() {
+        // Create executor delivering items between the Flow stages, no stage blocks so one thread is enough
+        ExecutorService executor = ExecutorFactory.newExecutor("async-chain-seven", 1);
+
+        // Create Function to build the users of one chunk of ids
+        Function<IdBatch, User[]> fetchUsers = ids -> {
+            sleep(100);
+            return ids.toUsers();
+        };
+
+        // Create Consumer to display each chunk of users as soon as it arrives
+        Consumer<User[]> displayer = users -> {
+            LOG.log("Running in " + Thread.currentThread().getName());
+            for (User user : users) {
+                LOG.log(user);
+            }
+        };
+
+        // Stream ids 1 to 10 in chunks of 3, at most 2 chunks buffered between two stages
+        long displayed = FlowPipeline.ids(1, 11, 3, executor, 2)
+                .map(fetchUsers)
+                .consume(displayer)
+                .join();
+        LOG.log("Chunks displayed = " + displayed);
 
         // Close executor so that JVM can terminate
-        executorOne.shutdown();
-        executorTwo.shutdown();
+        executor.shutdown();
+    }
+
+    private static void asyncChainOperationEight() {
+        // Create scheduler with 2 work-stealing workers, blocking stages go to the configured blocking executor
+        PipelineScheduler scheduler = new PipelineScheduler("async-chain-eight", 2, ExecutionMode.blockingStages());
+
+        // Create Supplier to supply list of IDs, it blocks so it is marked as blocking below
+        Supplier<List<Long>> supplyIDs = () -> {
+            sleep(200);
+            return Arrays.asList(1L, 2L, 3L);
+        };
+
+        // Create Function to return list of user from list of IDs
+        Function<List<Long>, List<User>> fetchUsers = ids -> {
+            LOG.log("Function is currently running in " + Thread.currentThread().getName());
+            return ids.stream().map(User::new).collect(Collectors.toList());
+        };
+
+        // Create Consumer to display list of user
+        Consumer<List<User>> displayer = users -> {
+            LOG.log("Running in " + Thread.currentThread().getName());
+            users.forEach(LOG::log);
+        };
+
+        // No executor is chosen by hand, fetchUsers and displayer stay on the thread which supplied the IDs
+        scheduler.supplyBlocking(supplyIDs)
+                .thenApply(fetchUsers)
+                .thenAccept(displayer)
+                .start()
+                .join();
+        LOG.log(scheduler);
+
+        // Pipelines without a blocking stage start on the workers, an idle worker steals the ones queued
+        // behind a busy one
+        PipelineScheduler.Pipeline<Void> fromWorkers = scheduler.supply(() -> Arrays.asList(4L, 5L, 6L))
+                .thenApply(fetchUsers)
+                .thenAccept(displayer);
+        CompletableFuture.allOf(fromWorkers.start(), fromWorkers.start(), fromWorkers.start()).join();
+        LOG.log(scheduler);
+
+        // Stop the scheduler's workers
+        scheduler.close();
+    }
+
+    private static void asyncChainOperationNine() {
+        // Create Supplier to supply batch of IDs, backed by long[] so no id is boxed
+        Supplier<IdBatch> supplyIDs = () -> {
+            sleep(200);
+            return IdBatch.of(1L, 2L, 3L);
+        };
+
+        // Create Function to return users of the batch, sharing its long[] instead of creating User objects
+        Function<IdBatch, UserBatch> fetchUsers = UserBatch::of;
+
+        // Create Consumer to display the batch, one User is re-pointed at each record and formatted right away
+        Consumer<UserBatch> displayer = users -> users.forEachFlyweight(LOG::log);
+
+        // Create completable future for supplyIds (supplier) task and chain the other tasks
+        CompletableFuture.supplyAsync(supplyIDs, ExecutionMode.blockingStages())
+                .thenApply(fetchUsers)
+                .thenAccept(displayer)
+                .join();
+    }
+
+    private static void asyncChainOperationTen() {
+        // Create Supplier to supply batch of IDs, backed by long[] so no id is boxed
+        Supplier<IdBatch> supplyIDs = () -> {
+            sleep(200);
+            return IdBatch.of(1L, 2L, 3L);
+        };
+
+        // Create Function to return users of the batch, it stands in for the slow remote fetch
+        Function<IdBatch, UserBatch> fetchUsers = ids -> {
+            sleep(300);
+            LOG.log("Fetched " + ids.size() + " users");
+            return UserBatch.of(ids);
+        };
+
+        Path file = Path.of(System.getProperty("java.io.tmpdir"), "async-chain-ten.bin");
+        try {
+            Files.deleteIfExists(file);
+
+            // Run the chain twice on the same file, the second run finds every id stored and fetches nothing
+            for (int run = 1; run <= 2; run++) {
+                try (MappedResultStore store = MappedResultStore.open(file)) {
+                    LOG.log("Run " + run + " opened " + store);
+
+                    // Only the ids without a stored user go to fetchUsers, the fetched ones are stored
+                    // before they are displayed
+                    CompletableFuture.supplyAsync(supplyIDs, ExecutionMode.blockingStages())
+                            .thenApply(store::remainingUsers)
+                            .thenApply(fetchUsers)
+                            .thenApply(users -> {
+                                store.appendAll(users);
+                                return users;
+                            })
+                            .thenAccept(users -> users.forEachFlyweight(LOG::log))
+                            .join();
+                }
+            }
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.error("Result store failed", e);
+        }
+    }
+
+    private static void asyncChainOperationEleven() {
+        // Create executor with a single thread, queued tasks run by priority instead of arrival
+        PriorityExecutor executor = ExecutorFactory.newPriorityExecutor("async-chain-eleven", 1);
+        Executor bulk = executor.withPriority(TaskPriority.LOW);
+        Executor interactive = executor.withPriority(TaskPriority.HIGH);
+
+        // Create Supplier to supply list of IDs
+        Supplier<List<Long>> supplyIDs = () -> {
+            sleep(100);
+            return Arrays.asList(1L, 2L, 3L);
+        };
+
+        // Create Function to return list of user from list of IDs
+        Function<List<Long>, List<User>> fetchUsers = ids -> ids.stream().map(User::new).collect(Collectors.toList());
+
+        // Queue 5 bulk pipelines first, then one interactive pipeline
+        List<CompletableFuture<Void>> pipelines = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            String name = "Bulk " + i;
+            pipelines.add(CompletableFuture.supplyAsync(supplyIDs, bulk)
+                    .thenApplyAsync(fetchUsers, bulk)
+                    .thenAccept(users -> LOG.log(name + " displayed " + users)));
+        }
+        pipelines.add(CompletableFuture.supplyAsync(supplyIDs, interactive)
+                .thenApplyAsync(fetchUsers, interactive)
+                .thenAccept(users -> LOG.log("Interactive displayed " + users)));
+
+        // The interactive pipeline is displayed first, ahead of the bulk pipelines queued before it
+        CompletableFuture.allOf(pipelines.toArray(new CompletableFuture<?>[0])).join();
+        LOG.log(executor.metrics());
+
+        // Close executor
+        executor.shutdown();
+    }
+
+    private static void asyncChainOperationTwelve() {
+        // Create executor with 2 threads to run the throttled supplier
+        ExecutorService executor = ExecutorFactory.newExecutor("async-chain-twelve", 2);
+
+        // Let 5 calls per second through, 2 of them right away, and refuse calls which would wait over 2s
+        RateLimiter limiter = new RateLimiter("supplyIDs", 5, 2, Duration.ofSeconds(2));
+
+        // Create Supplier to supply list of IDs
+        long start = System.nanoTime();
+        Supplier<List<Long>> supplyIDs = () -> {
+            LOG.log("Supplying at " + (System.nanoTime() - start) / 1_000_000 + " ms in "
+                    + Thread.currentThread().getName());
+            return Arrays.asList(1L, 2L, 3L);
+        };
+
+        // Create Function to return list of user from list of IDs
+        Function<List<Long>, List<User>> fetchUsers = ids -> ids.stream().map(User::new).collect(Collectors.toList());
+
+        // Start 6 pipelines at once, the limiter holds back supplyIDs without blocking a thread
+        List<CompletableFuture<Void>> pipelines = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            String name = "Pipeline " + i;
+            pipelines.add(limiter.supplyAsync(supplyIDs, executor)
+                    .thenApply(fetchUsers)
+                    .thenAccept(users -> LOG.log(name + " displayed " + users)));
+        }
+
+        // The first 2 supply at once, the next ones 200ms apart
+        CompletableFuture.allOf(pipelines.toArray(new CompletableFuture<?>[0])).join();
+        LOG.log(limiter);
+
+        // Close executor
+        executor.shutdown();
+    }
+
+    private static void awaitQuiescence(PipelineRunner runner) {
+        try {
+            runner.awaitQuiescence(Duration.ofSeconds(5));
+        } catch (InterruptedException e) {
+        }
     }
 
     private static void sleep(int timeout) {
@@ -1,9 +1,16 @@
 package com.shariqparwez.asyncchain;
 
+import com.shariqparwez.cache.AsyncLoadingCache;
+import com.shariqparwez.executor.ExecutionMode;
+import com.shariqparwez.log.AsyncLogSink;
 import com.shariqparwez.model.Email;
 import com.shariqparwez.model.User;
+import com.shariqparwez.pipeline.FanOut;
+import com.shariqparwez.pipeline.PipelineRunner;
 
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
@@ -11,12 +18,24 @@ import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class AsyncExampleMultiBranch {
+    // Every line goes through the async sink instead of locking System.out, so none is written out of order
+    private static final AsyncLogSink LOG = AsyncLogSink.stdout();
+
     public static void main(String[] args) {
         // ## 1 -  Displaying the Result of Two Tasks in a Third One
-        asyncChainOperationOne();
+        //asyncChainOperationOne();
+
+        // ## 2 -  Serving Repeated Ids of Both Tasks from an Async Cache
+        //asyncChainOperationTwo();
+
+        // ## 3 -  Joining N Tasks, with a Default Value for Slow or Failing Ones
+        asyncChainOperationThree();
     }
 
     private static void asyncChainOperationOne() {
+        // Create runner which tracks the pipeline
+        PipelineRunner runner = new PipelineRunner();
+
         // Create Supplier to supply list of IDs
         Supplier<List<Long>> supplyIDs = () -> {
             sleep(200);
@@ -40,19 +59,94 @@ public class AsyncExampleMultiBranch {
         };
 
         // Create completable future for supplyIds (supplier) task
-        CompletableFuture<List<Long>> completableFuture = CompletableFuture.supplyAsync(supplyIDs);
+        // Blocking stage runs on the executor picked by -Dpipeline.execution.mode
+        CompletableFuture<List<Long>> completableFuture =
+                CompletableFuture.supplyAsync(supplyIDs, ExecutionMode.blockingStages());
 
         // Create completable future for list of users and list of emails
         CompletableFuture<List<User>> userFuture = completableFuture.thenCompose(fetchUsers);
         CompletableFuture<List<Email>> emailFuture = completableFuture.thenCompose(fetchEmails);
 
         // When both userFuture and emailFuture is complete, then display size of both list
-        userFuture.thenAcceptBoth(emailFuture, (users, emails) -> {
-            System.out.println(users.size() + " - " + emails.size()) ;
-        });
+        runner.track(userFuture.thenAcceptBoth(emailFuture, (users, emails) -> {
+            LOG.log(users.size() + " - " + emails.size());
+        }));
+
+        // Wait for the pipeline to finish, exactly as long as the work takes
+        runner.shutdown(Duration.ofSeconds(5));
+    }
+
+    private static void asyncChainOperationTwo() {
+        // Create caches which load one user / email per id, 250 / 350 ms per load
+        AsyncLoadingCache<Long, User> users = new AsyncLoadingCache<>(
+                id -> CompletableFuture.supplyAsync(() -> {
+                    sleep(250);
+                    return new User(id);
+                }, ExecutionMode.blockingStages()),
+                1_000, Duration.ofMinutes(10), Duration.ofMinutes(5));
+        AsyncLoadingCache<Long, Email> emails = new AsyncLoadingCache<>(
+                id -> CompletableFuture.supplyAsync(() -> {
+                    sleep(350);
+                    return new Email(id);
+                }, ExecutionMode.blockingStages()),
+                1_000, Duration.ofMinutes(10), Duration.ofMinutes(5));
+
+        // Run the same pipeline three times, only the first run pays the load time
+        for (int run = 1; run <= 3; run++) {
+            long start = System.nanoTime();
+
+            // Create completable future for the IDs, then fetch users and emails through the caches
+            CompletableFuture<List<Long>> completableFuture =
+                    CompletableFuture.completedFuture(Arrays.asList(1L, 2L, 3L));
+            CompletableFuture<List<User>> userFuture = completableFuture.thenCompose(users::getAll);
+            CompletableFuture<List<Email>> emailFuture = completableFuture.thenCompose(emails::getAll);
+
+            // When both userFuture and emailFuture is complete, then display size of both list
+            userFuture.thenAcceptBoth(emailFuture, (userList, emailList) -> {
+                LOG.log(userList.size() + " - " + emailList.size());
+            }).join();
+
+            LOG.log("Run " + run + " took " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+
+        // Display hit / miss counts of both caches
+        LOG.log(users.stats());
+        LOG.log(emails.stats());
+    }
+
+    private static void asyncChainOperationThree() {
+        // Create Supplier to supply list of IDs
+        Supplier<List<Long>> supplyIDs = () -> {
+            sleep(200);
+            return Arrays.asList(1L, 2L, 3L);
+        };
+
+        // Create completable future for supplyIds (supplier) task
+        CompletableFuture<List<Long>> completableFuture =
+                CompletableFuture.supplyAsync(supplyIDs, ExecutionMode.blockingStages());
+
+        // Fan out three branches from the same list of IDs, each with its own timeout and default
+        FanOut<List<Long>> fanOut = FanOut.from(completableFuture, ExecutionMode.blockingStages());
+        FanOut.Branch<List<User>> users = fanOut.branch("users", ids -> {
+            sleep(250);
+            return ids.stream().map(User::new).collect(Collectors.toList());
+        }, Collections.emptyList(), Duration.ofMillis(500));
+        FanOut.Branch<List<Email>> emails = fanOut.branch("emails", ids -> {
+            sleep(350);
+            return ids.stream().map(Email::new).collect(Collectors.toList());
+        }, Collections.emptyList(), Duration.ofMillis(500));
+        FanOut.Branch<Integer> friendCount = fanOut.branch("friendCount", ids -> {
+            // Far slower than its timeout, will be filled with the default
+            sleep(5_000);
+            return ids.size() * 10;
+        }, 0, Duration.ofMillis(500));
 
-        // Giving the time for asynchronous activities to complete by making main thread to sleep
-        sleep(1_000);
+        // When all branches are complete or timed out, display size of each result
+        fanOut.join(result -> result.get(users).size() + " - " + result.get(emails).size()
+                        + " - " + result.get(friendCount) + " (friendCount timed out = "
+                        + result.isTimedOut(friendCount) + ")")
+                .thenAccept(LOG::log)
+                .join();
     }
 
     private static void sleep(int timeout) {
@@ -1,19 +1,35 @@
 package com.shariqparwez.asyncchain;
 
+import com.shariqparwez.executor.ExecutionMode;
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.log.AsyncLogSink;
 import com.shariqparwez.model.User;
+import com.shariqparwez.pipeline.DeadlinePipeline;
+import com.shariqparwez.pipeline.Hedge;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class AsyncExampleMultiBranchEither {
+    // Every line goes through the async sink instead of locking System.out, so none is written out of order
+    private static final AsyncLogSink LOG = AsyncLogSink.stdout();
+
     public static void main(String[] args) {
         // ## 1 -  Displaying the Result of the First Completed Task
-        asyncChainOperationOne();
+        //asyncChainOperationOne();
+
+        // ## 2 -  Cancelling the Losing Task once the First One is Complete, under a Deadline
+        //asyncChainOperationTwo();
+
+        // ## 3 -  Hedging: Starting the Second Task only when the First One is Slow
+        asyncChainOperationThree();
     }
 
     private static void asyncChainOperationOne() {
@@ -40,18 +56,22 @@ public class AsyncExampleMultiBranchEither {
         };
 
         // Create Consumer to display list of user
-        Consumer<List<User>> displayer = users -> users.forEach(System.out::println);
+        Consumer<List<User>> displayer = users -> users.forEach(LOG::log);
 
         // Create completable future for supplyIds (supplier) task
-        CompletableFuture<List<Long>> completableFuture = CompletableFuture.supplyAsync(supplyIDs);
+        // Blocking stage runs on the executor picked by -Dpipeline.execution.mode
+        CompletableFuture<List<Long>> completableFuture =
+                CompletableFuture.supplyAsync(supplyIDs, ExecutionMode.blockingStages());
 
         // Fetch completable future for usersOne and usersTwo
-        CompletableFuture<List<User>> usersOne = completableFuture.thenComposeAsync(fetchUsersOne);
-        CompletableFuture<List<User>> usersTwo = completableFuture.thenComposeAsync(fetchUsersTwo);
+        CompletableFuture<List<User>> usersOne = completableFuture.thenComposeAsync(fetchUsersOne,
+                ExecutionMode.blockingStages());
+        CompletableFuture<List<User>> usersTwo = completableFuture.thenComposeAsync(fetchUsersTwo,
+                ExecutionMode.blockingStages());
 
         // Chain a runnable task to respective user completable futures
-        usersOne.thenRun(() -> System.out.println("Users One"));
-        usersTwo.thenRun(() -> System.out.println("Users Two"));
+        usersOne.thenRun(() -> LOG.log("Users One"));
+        usersTwo.thenRun(() -> LOG.log("Users Two"));
 
         // As one task is complete, consumer should get executed
         usersOne.acceptEither(usersTwo, displayer);
@@ -60,6 +80,74 @@ public class AsyncExampleMultiBranchEither {
         sleep(6_000);
     }
 
+    private static void asyncChainOperationTwo() {
+        // Create Executor for the pipeline stages
+        ExecutorService executor = ExecutorFactory.newExecutor("either-two", 4);
+
+        // Create pipeline with a deadline of one second, counted from the start trigger
+        DeadlinePipeline pipeline = new DeadlinePipeline(Duration.ofSeconds(1), executor);
+
+        // Create Supplier to supply list of IDs
+        Supplier<List<Long>> supplyIDs = () -> {
+            sleep(200);
+            return Arrays.asList(1L, 2L, 3L);
+        };
+
+        // Create Function to return list of user from list of IDs
+        Function<List<Long>, List<User>> fetchUsersOne = ids -> {
+            sleep(150);
+            return ids.stream().map(User::new).collect(Collectors.toList());
+        };
+
+        // Create Function to return list of user from list of IDs, far too slow for the deadline
+        Function<List<Long>, List<User>> fetchUsersTwo = ids -> {
+            sleep(5000);
+            return ids.stream().map(User::new).collect(Collectors.toList());
+        };
+
+        // Create Consumer to display list of user
+        Consumer<List<User>> displayer = users -> users.forEach(LOG::log);
+
+        // Chain the stages behind the start trigger of the pipeline
+        CompletableFuture<List<Long>> supply = pipeline.supply("supplyIDs", supplyIDs);
+        CompletableFuture<List<User>> usersOne = pipeline.thenApply("fetchUsersOne", supply, fetchUsersOne);
+        CompletableFuture<List<User>> usersTwo = pipeline.thenApply("fetchUsersTwo", supply, fetchUsersTwo);
+
+        // As one task is complete, the other one is cancelled and its thread interrupted
+        CompletableFuture<List<User>> users = pipeline.either(usersOne, usersTwo);
+        CompletableFuture<Void> display = pipeline.thenAccept("displayer", users, displayer);
+
+        // Start the pipeline, which also starts the deadline
+        pipeline.trigger();
+
+        // Wait for the display task only, not for the slowest branch
+        display.join();
+        LOG.log("Users Two cancelled = " + usersTwo.isCancelled());
+
+        // Close executor, JVM terminates right away as the interrupted thread is already back in the pool
+        executor.shutdown();
+    }
+
+    private static void asyncChainOperationThree() {
+        // Create hedge firing a backup call once the primary is slower than the p95 of earlier calls
+        Hedge hedge = new Hedge(95, Duration.ofMillis(300), Duration.ofMillis(10));
+
+        // Create Supplier of the user fetch, usually fast but sometimes very slow
+        Supplier<CompletableFuture<List<User>>> fetchUsers = () -> CompletableFuture.supplyAsync(() -> {
+            sleep(Math.random() < 0.1 ? 2_000 : 150);
+            return Arrays.asList(1L, 2L, 3L).stream().map(User::new).collect(Collectors.toList());
+        }, ExecutionMode.blockingStages());
+
+        // Run pipelines one after the other, only the slow ones get a backup call
+        for (int i = 0; i < 30; i++) {
+            hedge.call(fetchUsers).join();
+        }
+
+        // Display how often a backup call was needed
+        LOG.log("Calls = " + hedge.getCallCount() + ", hedges = " + hedge.getHedgeCount()
+                + ", backup wins = " + hedge.getBackupWinCount());
+    }
+
     private static void sleep(int timeout) {
         try {
             Thread.sleep(timeout);
@@ -1,16 +1,27 @@
 package com.shariqparwez.asyncexception;
 
+import com.shariqparwez.log.AsyncLogSink;
 import com.shariqparwez.model.User;
+import com.shariqparwez.pipeline.PipelineRunner;
+import com.shariqparwez.resilience.Bulkhead;
+import com.shariqparwez.resilience.CircuitBreaker;
+import com.shariqparwez.resilience.Retry;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class ExceptionExample {
+    // Every line goes through the async sink instead of locking System.out, so none is written out of order
+    private static final AsyncLogSink LOG = AsyncLogSink.stdout();
+
     public static void main(String[] args) {
         // ## 1 -  Setting up a Chain That Fails
         //asyncChainExceptionOperationOne();
@@ -22,10 +33,19 @@ public class ExceptionExample {
         //asyncChainExceptionOperationThree();
 
         // ## 4 -  Providing a Default Value with the Handle Pattern
-        asyncChainExceptionOperationFour();
+        //asyncChainExceptionOperationFour();
+
+        // ## 5 -  Failing Fast with a Circuit Breaker and a Bulkhead in Place of Exceptionally
+        //asyncChainExceptionOperationFive();
+
+        // ## 6 -  Retrying a Failing Supplier with Backoff, without Sleeping on a Thread
+        asyncChainExceptionOperationSix();
     }
 
     private static void asyncChainExceptionOperationOne() {
+        // Create runner which tracks the pipeline
+        PipelineRunner runner = new PipelineRunner();
+
         // Create a supplier which throws exception
         Supplier<List<Long>> supplyIDs = () -> {
           sleep(200);
@@ -40,27 +60,30 @@ public class ExceptionExample {
         };
 
         // Create a consumer which displays list of users fetched from function
-        Consumer<List<User>> displayer = users -> users.forEach(System.out::println);
+        Consumer<List<User>> displayer = users -> users.forEach(LOG::log);
 
         // Build a completable future from supplier and chain function and consumer
         CompletableFuture<List<Long>> supply = CompletableFuture.supplyAsync(supplyIDs);
         CompletableFuture<List<User>> fetch = supply.thenApply(fetchUsers);
-        CompletableFuture<Void> display = fetch.thenAccept(displayer);
+        CompletableFuture<Void> display = runner.track(fetch.thenAccept(displayer));
 
-        // Make main thread sleep, which will enable above pipeline of tasks to complete
-        sleep(1_000);
+        // Wait for the pipeline to finish, exactly as long as the work takes
+        runner.shutdown(Duration.ofSeconds(5));
 
         // Display information about each completable future
-        System.out.println("Supply : done = " + supply.isDone() +
+        LOG.log("Supply : done = " + supply.isDone() +
                 " exception = " + supply.isCompletedExceptionally());
-        System.out.println("Fetch : done = " + fetch.isDone() +
+        LOG.log("Fetch : done = " + fetch.isDone() +
                 " exception = " + fetch.isCompletedExceptionally());
-        System.out.println("Display : done = " + display.isDone() +
+        LOG.log("Display : done = " + display.isDone() +
                 " exception = " + display.isCompletedExceptionally());
 
     }
 
     private static void asyncChainExceptionOperationTwo() {
+        // Create runner which tracks the pipeline
+        PipelineRunner runner = new PipelineRunner();
+
         // Create a supplier which throws exception
         Supplier<List<Long>> supplyIDs = () -> {
             sleep(200);
@@ -75,31 +98,34 @@ public class ExceptionExample {
         };
 
         // Create a consumer which displays list of users fetched from function
-        Consumer<List<User>> displayer = users -> users.forEach(System.out::println);
+        Consumer<List<User>> displayer = users -> users.forEach(LOG::log);
 
         // Build a completable future from supplier and chain function and consumer
         CompletableFuture<List<Long>> supply = CompletableFuture.supplyAsync(supplyIDs);
         CompletableFuture<List<Long>> exception = supply.exceptionally(e -> Arrays.asList());
         CompletableFuture<List<User>> fetch = exception.thenApply(fetchUsers);
-        CompletableFuture<Void> display = fetch.thenAccept(displayer);
+        CompletableFuture<Void> display = runner.track(fetch.thenAccept(displayer));
 
         // [Additional] When this is uncommented, will throw exception
         //supply.join();
 
-        // Make main thread sleep, which will enable above pipeline of tasks to complete
-        sleep(1_000);
+        // Wait for the pipeline to finish, exactly as long as the work takes
+        runner.shutdown(Duration.ofSeconds(5));
 
         // Display information about each completable future
-        System.out.println("Supply : done = " + supply.isDone() +
+        LOG.log("Supply : done = " + supply.isDone() +
                 " exception = " + supply.isCompletedExceptionally());
-        System.out.println("Fetch : done = " + fetch.isDone() +
+        LOG.log("Fetch : done = " + fetch.isDone() +
                 " exception = " + fetch.isCompletedExceptionally());
-        System.out.println("Display : done = " + display.isDone() +
+        LOG.log("Display : done = " + display.isDone() +
                 " exception = " + display.isCompletedExceptionally());
 
     }
 
     private static void asyncChainExceptionOperationThree() {
+        // Create runner which tracks the pipeline
+        PipelineRunner runner = new PipelineRunner();
+
         // Create a supplier which throws exception
         Supplier<List<Long>> supplyIDs = () -> {
             sleep(200);
@@ -114,7 +140,7 @@ public class ExceptionExample {
         };
 
         // Create a consumer which displays list of users fetched from function
-        Consumer<List<User>> displayer = users -> users.forEach(System.out::println);
+        Consumer<List<User>> displayer = users -> users.forEach(LOG::log);
 
         // Build a completable future from supplier and chain function and consumer
         // Exception handling using whenComplete
@@ -122,27 +148,29 @@ public class ExceptionExample {
         CompletableFuture<List<Long>> exception = supply.whenComplete(
                 (ids, e) -> {
                     if (e != null) {
-                        System.out.println(e.getMessage());
-                        e.printStackTrace();
+                        LOG.error(e.getMessage(), e);
                     }
                 });
         CompletableFuture<List<User>> fetch = exception.thenApply(fetchUsers);
-        CompletableFuture<Void> display = fetch.thenAccept(displayer);
+        CompletableFuture<Void> display = runner.track(fetch.thenAccept(displayer));
 
-        // Make main thread sleep, which will enable above pipeline of tasks to complete
-        sleep(1_000);
+        // Wait for the pipeline to finish, exactly as long as the work takes
+        runner.shutdown(Duration.ofSeconds(5));
 
         // Display information about each completable future
-        System.out.println("Supply : done = " + supply.isDone() +
+        LOG.log("Supply : done = " + supply.isDone() +
                 " exception = " + supply.isCompletedExceptionally());
-        System.out.println("Fetch : done = " + fetch.isDone() +
+        LOG.log("Fetch : done = " + fetch.isDone() +
                 " exception = " + fetch.isCompletedExceptionally());
-        System.out.println("Display : done = " + display.isDone() +
+        LOG.log("Display : done = " + display.isDone() +
                 " exception = " + display.isCompletedExceptionally());
 
     }
 
     private static void asyncChainExceptionOperationFour() {
+        // Create runner which tracks the pipeline
+        PipelineRunner runner = new PipelineRunner();
+
         // Create a supplier which throws exception
         Supplier<List<Long>> supplyIDs = () -> {
             sleep(200);
@@ -157,7 +185,7 @@ public class ExceptionExample {
         };
 
         // Create a consumer which displays list of users fetched from function
-        Consumer<List<User>> displayer = users -> users.forEach(System.out::println);
+        Consumer<List<User>> displayer = users -> users.forEach(LOG::log);
 
         // Build a completable future from supplier and chain function and consumer
         // Exception handling using handle
@@ -165,29 +193,134 @@ public class ExceptionExample {
         CompletableFuture<List<Long>> exception = supply.handle(
                 (ids, e) -> {
                     if (e != null) {
-                        System.out.println(e.getMessage());
-                        e.printStackTrace();
+                        LOG.error(e.getMessage(), e);
                         return Arrays.asList();
                     } else {
                         return ids;
                     }
                 });
         CompletableFuture<List<User>> fetch = exception.thenApply(fetchUsers);
-        CompletableFuture<Void> display = fetch.thenAccept(displayer);
+        CompletableFuture<Void> display = runner.track(fetch.thenAccept(displayer));
 
-        // Make main thread sleep, which will enable above pipeline of tasks to complete
-        sleep(1_000);
+        // Wait for the pipeline to finish, exactly as long as the work takes
+        runner.shutdown(Duration.ofSeconds(5));
 
         // Display information about each completable future
-        System.out.println("Supply : done = " + supply.isDone() +
+        LOG.log("Supply : done = " + supply.isDone() +
                 " exception = " + supply.isCompletedExceptionally());
-        System.out.println("Fetch : done = " + fetch.isDone() +
+        LOG.log("Fetch : done = " + fetch.isDone() +
                 " exception = " + fetch.isCompletedExceptionally());
-        System.out.println("Display : done = " + display.isDone() +
+        LOG.log("Display : done = " + display.isDone() +
                 " exception = " + display.isCompletedExceptionally());
 
     }
 
+    private static void asyncChainExceptionOperationFive() {
+        // Create a supplier which fails for its first 5 calls, then recovers
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<List<Long>> supplyIDs = () -> {
+            sleep(200);
+            if (calls.incrementAndGet() <= 5) {
+                throw new IllegalStateException("No data");
+            }
+            return Arrays.asList(1L, 2L, 3L);
+        };
+
+        // Create a function which returns list of users as per list of ids fetched from supplier
+        Function<List<Long>, List<User>> fetchUsers = ids -> {
+            sleep(300);
+            return ids.stream().map(User::new).collect(Collectors.toList());
+        };
+
+        // Create a consumer which displays list of users fetched from function
+        Consumer<List<User>> displayer = users -> users.forEach(LOG::log);
+
+        // Create a circuit breaker which opens at 50% failures over the last 4 calls, and stays open for 1 second
+        CircuitBreaker breaker = new CircuitBreaker("supplyIDs", 4, 4, 50,
+                Duration.ofMillis(1_000), 100, Duration.ofSeconds(1), 1);
+        breaker.onStateTransition((from, to) -> LOG.log("Breaker : " + from + " -> " + to));
+
+        // Create a bulkhead which lets at most 2 supply calls run at once
+        Bulkhead bulkhead = new Bulkhead("supplyIDs", 2);
+
+        // Run the chain repeatedly, the breaker replaces exceptionally and gives the fallback without running
+        // the supplier while it is open
+        for (int i = 1; i <= 12; i++) {
+            long start = System.nanoTime();
+            CompletableFuture<List<Long>> supply = breaker.call(
+                    () -> CompletableFuture.supplyAsync(supplyIDs), e -> Arrays.asList());
+            CompletableFuture<Void> display = supply.thenApply(fetchUsers).thenAccept(displayer);
+            display.join();
+            LOG.log(String.format("Run %2d : %4d ms, %s", i, (System.nanoTime() - start) / 1_000_000, breaker));
+            sleep(100);
+        }
+
+        // Start 4 supply calls at once through the bulkhead, 2 of them are rejected and get the fallback right away
+        List<CompletableFuture<List<Long>>> supplies = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            supplies.add(bulkhead.call(() -> CompletableFuture.supplyAsync(supplyIDs), e -> {
+                LOG.log("Fallback : " + e.getMessage());
+                return Arrays.asList();
+            }));
+        }
+        List<CompletableFuture<Void>> displays = supplies.stream()
+                .map(supply -> supply.thenApplyAsync(fetchUsers).thenAccept(displayer))
+                .collect(Collectors.toList());
+        CompletableFuture.allOf(displays.toArray(new CompletableFuture<?>[0])).join();
+        LOG.log(bulkhead);
+    }
+
+    private static void asyncChainExceptionOperationSix() {
+        // Create a supplier which fails for its first 2 calls, then recovers
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<List<Long>> supplyIDs = () -> {
+            sleep(200);
+            LOG.log("Attempt " + calls.incrementAndGet() + " on " + Thread.currentThread().getName());
+            if (calls.get() <= 2) {
+                throw new IllegalStateException("No data");
+            }
+            return Arrays.asList(1L, 2L, 3L);
+        };
+
+        // Create a supplier which fails with an exception that is not worth retrying
+        Supplier<List<Long>> supplyBadIDs = () -> {
+            sleep(200);
+            throw new IllegalArgumentException("Bad query");
+        };
+
+        // Create a function which returns list of users as per list of ids fetched from supplier
+        Function<List<Long>, List<User>> fetchUsers = ids -> {
+            sleep(300);
+            return ids.stream().map(User::new).collect(Collectors.toList());
+        };
+
+        // Create a consumer which displays list of users fetched from function
+        Consumer<List<User>> displayer = users -> users.forEach(LOG::log);
+
+        // Create a retry with up to 4 attempts on IllegalStateException only,
+        // backing off up to 100ms, 200ms, then 400ms with full jitter
+        Retry retry = Retry.onIllegalState(4, Duration.ofMillis(100), Duration.ofSeconds(1));
+
+        // Build the chain with the retried supplier, the waits between attempts are scheduled, not slept
+        long start = System.nanoTime();
+        CompletableFuture<List<Long>> supply = retry.call(() -> CompletableFuture.supplyAsync(supplyIDs));
+        CompletableFuture<Void> display = supply.thenApply(fetchUsers).thenAccept(displayer);
+        display.join();
+        LOG.log("Retried chain : " + (System.nanoTime() - start) / 1_000_000 + " ms, " + retry);
+
+        // IllegalArgumentException is not retryable, so the chain falls back after the first attempt
+        start = System.nanoTime();
+        CompletableFuture<List<Long>> badSupply = retry.call(() -> CompletableFuture.supplyAsync(supplyBadIDs));
+        CompletableFuture<Void> badDisplay = badSupply
+                .exceptionally(e -> {
+                    LOG.log("Not retried : " + e);
+                    return Arrays.asList();
+                })
+                .thenApply(fetchUsers).thenAccept(displayer);
+        badDisplay.join();
+        LOG.log("Failed chain : " + (System.nanoTime() - start) / 1_000_000 + " ms, " + retry);
+    }
+
     private static void sleep(int timeout) {
         try {
             Thread.sleep(timeout);
@@ -0,0 +1,83 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.executor.LatencyHistogram;
+import com.shariqparwez.http.LimitedHttpClient;
+import com.shariqparwez.http.StubHttpServer;
+import com.shariqparwez.resilience.AdaptiveLimiter;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Open loop load above the capacity of a StubHttpServer with a fixed number of workers, sent with plain
+// HttpClient.sendAsync and through LimitedHttpClient. Without a limit every request is accepted and latency
+// grows with the backlog; with the limiter the excess is shed and the accepted requests stay fast.
+// Usage: AdaptiveLimiterBenchmark [requestsPerSecond] [seconds] [serverWorkers] [serverDelayMillis] [maxQueue]
+public class AdaptiveLimiterBenchmark {
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        long delayMillis = args.length > 3 ? Long.parseLong(args[3]) : 20;
+        int maxQueue = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+
+        System.out.printf("offered = %d req/s, capacity = %d req/s%n", rate, workers * 1_000 / delayMillis);
+        try (StubHttpServer server = new StubHttpServer(1_024, delayMillis, workers)) {
+            URI uri = server.uri("/users");
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(ExecutorFactory.newSharedExecutor("limiter-bench-http", 4))
+                    .build();
+
+            run("unlimited", uri, rate, seconds, request -> client.sendAsync(request,
+                    HttpResponse.BodyHandlers.discarding()));
+
+            AdaptiveLimiter limiter = new AdaptiveLimiter("stub", maxQueue);
+            LimitedHttpClient limited = new LimitedHttpClient(client, limiter);
+            run("adaptive", uri, rate, seconds, request -> limited.sendAsync(request,
+                    HttpResponse.BodyHandlers.discarding()));
+            System.out.printf("  %s, increases = %d, decreases = %d%n",
+                    limiter, limiter.getIncreaseCount(), limiter.getDecreaseCount());
+        }
+    }
+
+    private static void run(String name, URI uri, int rate, int seconds,
+                            Function<HttpRequest, CompletableFuture<HttpResponse<Void>>> send) {
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong rejected = new AtomicLong();
+        List<CompletableFuture<?>> calls = new ArrayList<>();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        for (long i = 0; i < (long) rate * seconds; i++) {
+            // Send on schedule whatever happened to earlier requests
+            long due = start + i * intervalNanos;
+            while (System.nanoTime() < due) {
+                Thread.onSpinWait();
+            }
+            long sentAt = System.nanoTime();
+            calls.add(send.apply(request).handle((response, e) -> {
+                if (e != null) {
+                    rejected.incrementAndGet();
+                } else {
+                    latency.record(System.nanoTime() - sentAt);
+                }
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).join();
+
+        System.out.printf("%-9s : completed = %5d, rejected = %5d, p50 = %6d ms, p99 = %6d ms, max = %6d ms%n",
+                name, latency.getCount(), rejected.get(), latency.getPercentile(50, TimeUnit.MILLISECONDS),
+                latency.getPercentile(99, TimeUnit.MILLISECONDS), latency.getMax(TimeUnit.MILLISECONDS));
+    }
+}
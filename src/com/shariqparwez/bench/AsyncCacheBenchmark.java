@@ -0,0 +1,82 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.cache.AsyncLoadingCache;
+import com.shariqparwez.model.User;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hit ratio and throughput of AsyncLoadingCache on a Zipfian id workload, for several cache sizes.
+// The loader completes after a fixed delay on a timer, so no thread is blocked while loading.
+// Usage: AsyncCacheBenchmark [ids] [zipfExponent] [threads] [requestsPerThread] [loadMillis]
+public class AsyncCacheBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int ids = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        double exponent = args.length > 1 ? Double.parseDouble(args[1]) : 0.99;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int requestsPerThread = args.length > 3 ? Integer.parseInt(args[3]) : 20_000;
+        long loadMillis = args.length > 4 ? Long.parseLong(args[4]) : 2;
+
+        double[] cumulative = zipf(ids, exponent);
+        ScheduledExecutorService backend = Executors.newScheduledThreadPool(2, task -> {
+            Thread thread = new Thread(task, "backend");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int size : new int[] {100, 1_000, 10_000}) {
+            AtomicLong backendLoads = new AtomicLong();
+            AsyncLoadingCache<Long, User> cache = new AsyncLoadingCache<>(
+                    id -> {
+                        backendLoads.incrementAndGet();
+                        CompletableFuture<User> user = new CompletableFuture<>();
+                        backend.schedule(() -> user.complete(new User(id)), loadMillis, TimeUnit.MILLISECONDS);
+                        return user;
+                    },
+                    size, Duration.ofMinutes(5), Duration.ofMinutes(1));
+
+            CountDownLatch done = new CountDownLatch(threads);
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        cache.get(sample(cumulative, random.nextDouble())).join();
+                    }
+                    done.countDown();
+                }).start();
+            }
+            done.await();
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            System.out.printf("size = %6d, gets/s = %10.0f, backend loads = %7d, %s%n",
+                    size, threads * (double) requestsPerThread / seconds, backendLoads.get(), cache.stats());
+        }
+    }
+
+    // Cumulative distribution of a Zipf law over ids 1..n
+    private static double[] zipf(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static long sample(double[] cumulative, double uniform) {
+        int index = Arrays.binarySearch(cumulative, uniform);
+        return (index >= 0 ? index : -index - 1) + 1L;
+    }
+}
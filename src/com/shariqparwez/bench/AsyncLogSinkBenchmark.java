@@ -0,0 +1,64 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.log.AsyncLogSink;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+// Time spent by displayer threads writing lines through a PrintStream (as System.out does) versus AsyncLogSink.
+// Both write to a temporary file so the terminal does not dominate the numbers. Callers never wait for the
+// sink, so when the burst outruns the writer thread (few cores, small ring) the excess shows up as dropped.
+// Usage: AsyncLogSinkBenchmark [threads] [linesPerThread] [ringCapacity]
+public class AsyncLogSinkBenchmark {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int linesPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 65_536;
+
+        for (int round = 0; round < 2; round++) {
+            Path printFile = Files.createTempFile("print-stream", ".log");
+            try (PrintStream out = new PrintStream(
+                    new BufferedOutputStream(new FileOutputStream(printFile.toFile())), true)) {
+                report("PrintStream", run(threads, linesPerThread, out::println), threads * (long) linesPerThread, 0);
+            }
+
+            Path sinkFile = Files.createTempFile("async-sink", ".log");
+            AsyncLogSink sink = AsyncLogSink.toFile(sinkFile, capacity);
+            long callerNanos = run(threads, linesPerThread, sink::log);
+            sink.close();
+            report("AsyncLogSink", callerNanos, sink.getWrittenCount(), sink.getDroppedCount());
+            System.out.printf("  %s%n", sink);
+
+            Files.delete(printFile);
+            Files.delete(sinkFile);
+        }
+    }
+
+    // Wall time until every thread has handed over all its lines
+    private static long run(int threads, int linesPerThread, Consumer<String> log) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            new Thread(() -> {
+                for (int i = 0; i < linesPerThread; i++) {
+                    log.accept("User [id=" + (thread * (long) linesPerThread + i) + "]");
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, long nanos, long written, long dropped) {
+        System.out.printf("%-12s : caller time = %6d ms, written = %9d, dropped = %9d%n",
+                name, nanos / 1_000_000, written, dropped);
+    }
+}
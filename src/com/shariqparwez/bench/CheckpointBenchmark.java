@@ -0,0 +1,116 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.checkpoint.CheckpointCodec;
+import com.shariqparwez.checkpoint.CheckpointLog;
+import com.shariqparwez.checkpoint.CheckpointedPipeline;
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.executor.LatencyHistogram;
+import com.shariqparwez.executor.RejectionPolicy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+// Cost of checkpointing 'pipelines' concurrent delayed start pipelines of 'stages' stages, each stage parked
+// for 'stageMicros' and passing on 'idsPerStage' ids. Reports the time without and with checkpoints, the
+// per-stage checkpoint overhead, how many appends each group commit (fsync) covered, the time to reopen the
+// complete log, and the time to rebuild every pipeline from it.
+// Usage: CheckpointBenchmark [pipelines] [stages] [stageMicros] [idsPerStage] [threads]
+public class CheckpointBenchmark {
+    public static void main(String[] args) throws IOException {
+        int pipelines = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int stages = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        long stageMicros = args.length > 2 ? Long.parseLong(args[2]) : 1_000;
+        int idsPerStage = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 32;
+
+        // Queue large enough for every pipeline to be triggered at once
+        ExecutorService executor =
+                ExecutorFactory.newBoundedExecutor("checkpoint-bench", threads, pipelines, RejectionPolicy.ABORT);
+        Function<List<Long>, List<Long>> stage = ids -> {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(stageMicros));
+            return ids;
+        };
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id < idsPerStage; id++) {
+            ids.add(id);
+        }
+
+        // Plain chains, no checkpoint
+        long start = System.nanoTime();
+        List<CompletableFuture<List<Long>>> plain = new ArrayList<>();
+        for (int p = 0; p < pipelines; p++) {
+            CompletableFuture<List<Long>> future = CompletableFuture.supplyAsync(() -> ids, executor);
+            for (int s = 0; s < stages; s++) {
+                future = future.thenApply(stage);
+            }
+            plain.add(future);
+        }
+        CompletableFuture.allOf(plain.toArray(new CompletableFuture<?>[0])).join();
+        System.out.printf("plain        : %6d ms%n", (System.nanoTime() - start) / 1_000_000);
+
+        Path file = Files.createTempFile("checkpoint-bench", ".wal");
+        try {
+            Files.deleteIfExists(file);
+            try (CheckpointLog log = CheckpointLog.open(file)) {
+                start = System.nanoTime();
+                CheckpointedPipeline pipeline = run(log, pipelines, stages, stage, ids, executor);
+                long millis = (System.nanoTime() - start) / 1_000_000;
+
+                System.out.printf("checkpointed : %6d ms, %d appends in %d fsyncs (%.1f per fsync), %d KB%n",
+                        millis, log.getAppendCount(), log.getCommitCount(),
+                        (double) log.getAppendCount() / log.getCommitCount(), log.getByteCount() / 1024);
+                // Checkpoint overhead of each stage, across all pipelines
+                for (int s = 0; s < stages; s++) {
+                    LatencyHistogram overhead = new LatencyHistogram();
+                    for (int p = 0; p < pipelines; p++) {
+                        overhead.record((long) pipeline.getOverhead(p + "/stage" + s).getMean(TimeUnit.NANOSECONDS));
+                    }
+                    System.out.printf("  stage %d    : overhead p50 = %5d us, p99 = %5d us%n", s,
+                            overhead.getPercentile(50, TimeUnit.MICROSECONDS),
+                            overhead.getPercentile(99, TimeUnit.MICROSECONDS));
+                }
+            }
+
+            // Restart on the complete log, every stage is skipped
+            start = System.nanoTime();
+            try (CheckpointLog log = CheckpointLog.open(file)) {
+                long recoveryMicros = TimeUnit.NANOSECONDS.toMicros(log.getRecoveryNanos());
+                run(log, pipelines, stages, stage, ids, executor);
+                System.out.printf("recovery     : %6d ms to rebuild, of which %d us reading back %d stages%n",
+                        (System.nanoTime() - start) / 1_000_000, recoveryMicros, log.getRecoveredCount());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            executor.shutdown();
+        }
+    }
+
+    private static CheckpointedPipeline run(CheckpointLog log, int pipelines, int stages,
+                                            Function<List<Long>, List<Long>> stage, List<Long> ids,
+                                            ExecutorService executor) {
+        CheckpointedPipeline pipeline = new CheckpointedPipeline(log);
+        CompletableFuture<Void> start = new CompletableFuture<>();
+        List<CompletableFuture<List<Long>>> futures = new ArrayList<>();
+        for (int p = 0; p < pipelines; p++) {
+            // Each pipeline starts on its own executor thread, like start.completeAsync in TriggerExample
+            CompletableFuture<Void> trigger = start.thenApplyAsync(nil -> null, executor);
+            CompletableFuture<List<Long>> future =
+                    pipeline.thenSupply(trigger, p + "/supply", () -> ids, CheckpointCodec.ids());
+            for (int s = 0; s < stages; s++) {
+                future = pipeline.thenApply(future, p + "/stage" + s, stage, CheckpointCodec.ids());
+            }
+            futures.add(future);
+        }
+        start.complete(null);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        return pipeline;
+    }
+}
@@ -0,0 +1,98 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.model.IdBatch;
+import com.shariqparwez.model.User;
+import com.shariqparwez.model.UserBatch;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+// Heap footprint and GC cost of fetch + display over List<Long> -> List<User> against IdBatch -> UserBatch.
+// Footprint is the heap retained by one fetched batch after a full GC; GC time and count are summed over
+// 'rounds' fetch + display passes. Run one mode per JVM for the cleanest GC numbers.
+// Usage: ColumnarBatchBenchmark [ids] [rounds] [list|columnar|both]
+public class ColumnarBatchBenchmark {
+    public static void main(String[] args) {
+        int ids = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String mode = args.length > 2 ? args[2] : "both";
+
+        if (!"columnar".equals(mode)) {
+            measure("list", rounds, () -> {
+                List<Long> idList = new ArrayList<>(ids);
+                for (long id = 0; id < ids; id++) {
+                    idList.add(id);
+                }
+                return idList.stream().map(User::new).collect(Collectors.toList());
+            }, users -> {
+                long sum = 0;
+                for (User user : users) {
+                    sum += user.getId();
+                }
+                return sum;
+            });
+        }
+        if (!"list".equals(mode)) {
+            measure("columnar", rounds, () -> UserBatch.of(IdBatch.range(0, ids)), users -> {
+                long[] sum = new long[1];
+                users.forEachId(id -> sum[0] += id);
+                return sum[0];
+            });
+        }
+    }
+
+    private static <B> void measure(String name, int rounds, Supplier<B> fetch,
+                                    ToLongFunction<B> display) {
+        // Footprint of one batch
+        long before = usedAfterGc();
+        B batch = fetch.get();
+        long retained = usedAfterGc() - before;
+        Reference.reachabilityFence(batch);
+        batch = null;
+
+        // GC work caused by fetching and displaying batches back to back
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int i = 0; i < rounds; i++) {
+            checksum += display.applyAsLong(fetch.get());
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("%-8s : retained = %5d MB, %d rounds = %6d ms, GC count = %3d, GC time = %5d ms"
+                        + " (checksum %d)%n",
+                name, retained / (1024 * 1024), rounds, millis, gcCount() - gcCountBefore,
+                gcMillis() - gcMillisBefore, checksum);
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += gc.getCollectionTime();
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,274 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.executor.RejectionPolicy;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Throughput and allocation per operation of every composition pattern shown by the examples
+// (thenApply/Async, thenCompose/Async, thenAcceptBoth, applyToEither, acceptEither, exceptionally, handle,
+// whenComplete and the completeAsync trigger), across executors and chain depths 1 - 64.
+//
+// Results are written as JSON Lines, one JSON object per line, so runs can be compared:
+//   CompositionBenchmark [outputFile] [measureMillis] [patternFilter]
+//   CompositionBenchmark --compare <baseline.jsonl> <candidate.jsonl> [thresholdPercent]
+public class CompositionBenchmark {
+    private static final int[] DEPTHS = {1, 4, 16, 64};
+    private static final Pattern RESULT = Pattern.compile(
+            "\"name\":\"([^\"]+)\".*\"opsPerSec\":([0-9.]+).*\"bytesPerOp\":([0-9.]+)");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--compare")) {
+            compare(Paths.get(args[1]), Paths.get(args[2]), args.length > 3 ? Double.parseDouble(args[3]) : 10);
+            return;
+        }
+
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path output = args.length > 0 ? Paths.get(args[0])
+                : Paths.get("bench-results", "composition-" + timestamp + ".jsonl");
+        long measureMillis = args.length > 1 ? Long.parseLong(args[1]) : 500;
+        String filter = args.length > 2 ? args[2] : "";
+
+        Map<String, Executor> executors = new LinkedHashMap<>();
+        executors.put("common", ForkJoinPool.commonPool());
+        executors.put("single",
+                ExecutorFactory.newBoundedExecutor("bench-single", 1, 1024, RejectionPolicy.CALLER_RUNS));
+        executors.put("fixed4",
+                ExecutorFactory.newBoundedExecutor("bench-fixed4", 4, 1024, RejectionPolicy.CALLER_RUNS));
+
+        List<String> results = new ArrayList<>();
+        for (int depth : DEPTHS) {
+            // Patterns running on the completing thread do not depend on the executor
+            for (Map.Entry<String, Function<Integer, Runnable>> pattern : syncPatterns().entrySet()) {
+                measure(pattern.getKey(), "direct", depth, pattern.getValue().apply(depth), measureMillis, filter,
+                        results);
+            }
+            for (Map.Entry<String, Executor> executor : executors.entrySet()) {
+                Map<String, Runnable> patterns = asyncPatterns(executor.getValue(), depth);
+                for (Map.Entry<String, Runnable> pattern : patterns.entrySet()) {
+                    measure(pattern.getKey(), executor.getKey(), depth, pattern.getValue(), measureMillis, filter,
+                            results);
+                }
+            }
+        }
+
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        Files.write(output, results);
+        System.out.println("Results written to " + output);
+
+        executors.values().stream()
+                .filter(executor -> executor instanceof ExecutorService && executor != ForkJoinPool.commonPool())
+                .forEach(executor -> ((ExecutorService) executor).shutdown());
+    }
+
+    private static Map<String, Function<Integer, Runnable>> syncPatterns() {
+        Map<String, Function<Integer, Runnable>> patterns = new LinkedHashMap<>();
+        patterns.put("thenApply", depth -> () -> {
+            CompletableFuture<Void> start = new CompletableFuture<>();
+            CompletableFuture<Long> chain = start.thenApply(nil -> 1L);
+            for (int i = 1; i < depth; i++) {
+                chain = chain.thenApply(value -> value + 1);
+            }
+            start.complete(null);
+            chain.join();
+        });
+        patterns.put("thenCompose", depth -> () -> {
+            CompletableFuture<Void> start = new CompletableFuture<>();
+            CompletableFuture<Long> chain = start.thenApply(nil -> 1L);
+            for (int i = 1; i < depth; i++) {
+                chain = chain.thenCompose(value -> CompletableFuture.completedFuture(value + 1));
+            }
+            start.complete(null);
+            chain.join();
+        });
+        patterns.put("thenAcceptBoth", depth -> () -> {
+            CompletableFuture<Void> start = new CompletableFuture<>();
+            CompletableFuture<Long> users = start.thenApply(nil -> 1L);
+            CompletableFuture<Long> emails = start.thenApply(nil -> 2L);
+            CompletableFuture<Void> chain = users.thenAcceptBoth(emails, (left, right) -> { });
+            for (int i = 1; i < depth; i++) {
+                chain = chain.thenAcceptBoth(emails, (left, right) -> { });
+            }
+            start.complete(null);
+            chain.join();
+        });
+        patterns.put("applyToEither", depth -> () -> {
+            CompletableFuture<Void> start = new CompletableFuture<>();
+            CompletableFuture<Long> one = start.thenApply(nil -> 1L);
+            CompletableFuture<Long> two = new CompletableFuture<>();
+            CompletableFuture<Long> chain = one;
+            for (int i = 0; i < depth; i++) {
+                chain = chain.applyToEither(two, value -> value + 1);
+            }
+            start.complete(null);
+            chain.join();
+        });
+        patterns.put("acceptEither", depth -> () -> {
+            CompletableFuture<Void> start = new CompletableFuture<>();
+            CompletableFuture<Long> one = start.thenApply(nil -> 1L);
+            CompletableFuture<Long> two = new CompletableFuture<>();
+            CompletableFuture<Void> never = new CompletableFuture<>();
+            CompletableFuture<Void> chain = one.acceptEither(two, value -> { });
+            for (int i = 1; i < depth; i++) {
+                chain = chain.acceptEither(never, nil -> { });
+            }
+            start.complete(null);
+            chain.join();
+        });
+        patterns.put("exceptionally", depth -> () -> {
+            CompletableFuture<Void> start = new CompletableFuture<>();
+            CompletableFuture<Long> chain = start.thenApply(nil -> {
+                throw new IllegalStateException("No data");
+            });
+            for (int i = 0; i < depth; i++) {
+                chain = chain.exceptionally(e -> 0L).thenApply(value -> {
+                    throw new IllegalStateException("No data");
+                });
+            }
+            start.complete(null);
+            chain.exceptionally(e -> 0L).join();
+        });
+        patterns.put("handle", depth -> () -> {
+            CompletableFuture<Void> start = new CompletableFuture<>();
+            CompletableFuture<Long> chain = start.thenApply(nil -> 1L);
+            for (int i = 0; i < depth; i++) {
+                chain = chain.handle((value, e) -> e != null ? 0L : value + 1);
+            }
+            start.complete(null);
+            chain.join();
+        });
+        patterns.put("whenComplete", depth -> () -> {
+            CompletableFuture<Void> start = new CompletableFuture<>();
+            CompletableFuture<Long> chain = start.thenApply(nil -> 1L);
+            for (int i = 0; i < depth; i++) {
+                chain = chain.whenComplete((value, e) -> { });
+            }
+            start.complete(null);
+            chain.join();
+        });
+        return patterns;
+    }
+
+    private static Map<String, Runnable> asyncPatterns(Executor executor, int depth) {
+        Map<String, Runnable> patterns = new LinkedHashMap<>();
+        patterns.put("thenApplyAsync", () -> {
+            CompletableFuture<Long> chain = CompletableFuture.supplyAsync(() -> 1L, executor);
+            for (int i = 1; i < depth; i++) {
+                chain = chain.thenApplyAsync(value -> value + 1, executor);
+            }
+            chain.join();
+        });
+        patterns.put("thenComposeAsync", () -> {
+            CompletableFuture<Long> chain = CompletableFuture.supplyAsync(() -> 1L, executor);
+            for (int i = 1; i < depth; i++) {
+                chain = chain.thenComposeAsync(value -> CompletableFuture.completedFuture(value + 1), executor);
+            }
+            chain.join();
+        });
+        patterns.put("completeAsync", () -> {
+            CompletableFuture<Void> start = new CompletableFuture<>();
+            CompletableFuture<Long> chain = start.thenApply(nil -> 1L);
+            for (int i = 1; i < depth; i++) {
+                chain = chain.thenApply(value -> value + 1);
+            }
+            start.completeAsync(() -> null, executor);
+            chain.join();
+        });
+        return patterns;
+    }
+
+    private static void measure(String pattern, String executor, int depth, Runnable operation, long measureMillis,
+                                String filter, List<String> results) {
+        String name = pattern + "/" + executor + "/depth-" + depth;
+        if (!name.contains(filter)) {
+            return;
+        }
+
+        // Warm up for a fifth of the measurement time
+        long warmupEnd = System.nanoTime() + measureMillis * 200_000;
+        while (System.nanoTime() < warmupEnd) {
+            operation.run();
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long end = start + measureMillis * 1_000_000;
+        long ops = 0;
+        while (System.nanoTime() < end) {
+            operation.run();
+            ops++;
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        double bytesPerOp = (double) (allocatedBytes() - allocatedBefore) / ops;
+
+        System.out.printf("%-40s ops/s = %12.1f, bytes/op = %10.1f%n", name, ops / seconds, bytesPerOp);
+        results.add(String.format(Locale.ROOT, "{\"name\":\"%s\",\"pattern\":\"%s\",\"executor\":\"%s\",\"depth\":%d,"
+                        + "\"opsPerSec\":%.1f,\"bytesPerOp\":%.1f}",
+                name, pattern, executor, depth, ops / seconds, bytesPerOp));
+    }
+
+    private static void compare(Path baseline, Path candidate, double thresholdPercent) throws IOException {
+        Map<String, double[]> before = read(baseline);
+        Map<String, double[]> after = read(candidate);
+        int regressions = 0;
+
+        for (Map.Entry<String, double[]> entry : after.entrySet()) {
+            double[] old = before.get(entry.getKey());
+            if (old == null) {
+                continue;
+            }
+            double throughput = (entry.getValue()[0] - old[0]) / old[0] * 100;
+            double allocation = old[1] == 0 ? 0 : (entry.getValue()[1] - old[1]) / old[1] * 100;
+            boolean regressed = throughput < -thresholdPercent || allocation > thresholdPercent;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-40s ops/s %+7.1f%%, bytes/op %+7.1f%% %s%n",
+                    entry.getKey(), throughput, allocation, regressed ? "REGRESSION" : "");
+        }
+        System.out.println(regressions + " regression(s) beyond " + thresholdPercent + "%");
+    }
+
+    private static Map<String, double[]> read(Path file) throws IOException {
+        Map<String, double[]> results = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            Matcher matcher = RESULT.matcher(line);
+            if (matcher.find()) {
+                results.put(matcher.group(1),
+                        new double[] {Double.parseDouble(matcher.group(2)), Double.parseDouble(matcher.group(3))});
+            }
+        }
+        return results;
+    }
+
+    // Allocation across all live threads, since async patterns allocate on the executor's threads
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, allocated);
+        }
+        return total;
+    }
+}
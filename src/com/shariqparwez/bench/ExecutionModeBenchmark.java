@@ -0,0 +1,79 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.executor.ExecutionMode;
+import com.shariqparwez.executor.LatencyHistogram;
+import com.shariqparwez.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Runs N concurrent supplyIDs -> fetchUsers pipelines with blocking stages on the common pool,
+// fixed pools and virtual threads, and reports throughput and end to end latency.
+// The stage sleeps default to 1/100 of the examples' 200/300 ms so the common pool run finishes.
+// Usage: ExecutionModeBenchmark [pipelines] [supplyMillis] [fetchMillis]
+public class ExecutionModeBenchmark {
+    public static void main(String[] args) {
+        int pipelines = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int supplyMillis = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int fetchMillis = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        run("common", ExecutionMode.COMMON.newExecutor("bench-common", 0), pipelines, supplyMillis, fetchMillis);
+        for (int threads : new int[] {64, 256}) {
+            String name = "bench-fixed-" + threads;
+            System.setProperty("executor." + name + ".queue", String.valueOf(pipelines * 2));
+            run("fixed-" + threads, ExecutionMode.FIXED.newExecutor(name, threads),
+                    pipelines, supplyMillis, fetchMillis);
+        }
+        if (ExecutionMode.isVirtualSupported()) {
+            run("virtual", ExecutionMode.VIRTUAL.newExecutor("bench-virtual", 0), pipelines, supplyMillis, fetchMillis);
+        } else {
+            System.out.println("virtual   skipped, needs Java 21 or later (running "
+                    + System.getProperty("java.version") + ")");
+        }
+    }
+
+    private static void run(String name, Executor executor, int pipelines, int supplyMillis, int fetchMillis) {
+        LatencyHistogram latency = new LatencyHistogram();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(pipelines);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < pipelines; i++) {
+            long submitted = System.nanoTime();
+            futures.add(CompletableFuture
+                    .supplyAsync(() -> {
+                        sleep(supplyMillis);
+                        return Arrays.asList(1L, 2L, 3L);
+                    }, executor)
+                    .thenApplyAsync(ids -> {
+                        sleep(fetchMillis);
+                        return ids.stream().map(User::new).collect(Collectors.toList());
+                    }, executor)
+                    .thenAccept(users -> latency.record(System.nanoTime() - submitted)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        System.out.printf("%-9s pipelines/s = %9.1f, p50 = %6d ms, p99 = %6d ms, max = %6d ms%n",
+                name, pipelines / seconds,
+                latency.getPercentile(50, TimeUnit.MILLISECONDS),
+                latency.getPercentile(99, TimeUnit.MILLISECONDS),
+                latency.getMax(TimeUnit.MILLISECONDS));
+
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private static void sleep(int timeout) {
+        try {
+            Thread.sleep(timeout);
+        } catch (InterruptedException e) {
+        }
+    }
+}
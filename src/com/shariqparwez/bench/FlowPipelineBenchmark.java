@@ -0,0 +1,85 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.flow.FlowPipeline;
+import com.shariqparwez.model.IdBatch;
+import com.shariqparwez.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+// Peak heap and time of the list based supplyIDs -> fetchUsers -> displayer chain against FlowPipeline
+// streaming the same ids in IdBatch chunks. Heap is sampled every millisecond while a mode runs.
+// Run one mode per JVM for the cleanest numbers.
+// Usage: FlowPipelineBenchmark [ids] [list|flow|both] [chunkSize] [bufferCapacity]
+public class FlowPipelineBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        long ids = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        String mode = args.length > 1 ? args[1] : "both";
+        int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : 1_024;
+        int bufferCapacity = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+
+        ExecutorService executor = ExecutorFactory.newSharedExecutor("flow-bench", 4);
+
+        if (!"flow".equals(mode)) {
+            measure("list", () -> {
+                AtomicLong displayed = new AtomicLong();
+                CompletableFuture.supplyAsync(() -> {
+                    List<Long> list = new ArrayList<>();
+                    for (long id = 0; id < ids; id++) {
+                        list.add(id);
+                    }
+                    return list;
+                }, executor)
+                        .thenApply(list -> list.stream().map(User::new).collect(Collectors.toList()))
+                        .thenAccept(users -> users.forEach(user -> displayed.incrementAndGet()))
+                        .join();
+                return displayed.get();
+            });
+        }
+        if (!"list".equals(mode)) {
+            measure("flow", () -> {
+                AtomicLong displayed = new AtomicLong();
+                FlowPipeline.ids(0, ids, chunkSize, executor, bufferCapacity)
+                        .map(IdBatch::toUsers)
+                        .consume(users -> displayed.addAndGet(users.length))
+                        .join();
+                return displayed.get();
+            });
+        }
+    }
+
+    private static void measure(String name, LongSupplier pipeline) throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long baseline = runtime.totalMemory() - runtime.freeMemory();
+
+        AtomicLong peak = new AtomicLong(baseline);
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peak.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "heap-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long start = System.nanoTime();
+        long users = pipeline.getAsLong();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        sampler.interrupt();
+        sampler.join();
+        System.out.printf("%-4s : users = %,d, time = %,6d ms, peak heap above baseline = %,6d MB%n",
+                name, users, millis, (peak.get() - baseline) / (1024 * 1024));
+    }
+}
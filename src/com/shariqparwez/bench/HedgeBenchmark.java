@@ -0,0 +1,81 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.executor.LatencyHistogram;
+import com.shariqparwez.model.User;
+import com.shariqparwez.pipeline.Hedge;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Compares a single call, the race-both pattern of AsyncExampleMultiBranchEither and a p95 hedge
+// against a simulated backend with a slow tail (5% of calls take 20x longer).
+// Usage: HedgeBenchmark [requests] [fastMillis] [slowMillis]
+public class HedgeBenchmark {
+    private static final ScheduledExecutorService BACKEND = Executors.newScheduledThreadPool(4, task -> {
+        Thread thread = new Thread(task, "backend");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 4_000;
+        int fastMillis = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int slowMillis = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        AtomicLong backendCalls = new AtomicLong();
+        Supplier<CompletableFuture<List<User>>> fetchUsers = () -> {
+            backendCalls.incrementAndGet();
+            CompletableFuture<List<User>> future = new CompletableFuture<>();
+            int latency = ThreadLocalRandom.current().nextInt(100) < 5 ? slowMillis : fastMillis;
+            BACKEND.schedule(() -> future.complete(Arrays.asList(1L, 2L, 3L).stream()
+                    .map(User::new).collect(Collectors.toList())), latency, TimeUnit.MILLISECONDS);
+            return future;
+        };
+
+        run("single", requests, backendCalls, fetchUsers);
+
+        run("race-both", requests, backendCalls, () -> {
+            CompletableFuture<List<User>> one = fetchUsers.get();
+            CompletableFuture<List<User>> two = fetchUsers.get();
+            return one.applyToEither(two, users -> users);
+        });
+
+        Hedge hedge = new Hedge(95, Duration.ofMillis(slowMillis / 2), Duration.ofMillis(1));
+        run("hedged-p95", requests, backendCalls, () -> hedge.call(fetchUsers));
+        System.out.printf("  hedge rate = %.1f%%, backup wins = %d, current delay = %d ms%n",
+                hedge.getHedgeRate() * 100, hedge.getBackupWinCount(), hedge.currentHedgeDelay().toMillis());
+    }
+
+    private static void run(String name, int requests, AtomicLong backendCalls,
+                            Supplier<CompletableFuture<List<User>>> call) {
+        LatencyHistogram latency = new LatencyHistogram();
+        backendCalls.set(0);
+
+        // Keep 50 requests in flight at a time
+        for (int offset = 0; offset < requests; offset += 50) {
+            List<CompletableFuture<List<User>>> batch = new ArrayList<>();
+            for (int i = offset; i < Math.min(requests, offset + 50); i++) {
+                long start = System.nanoTime();
+                batch.add(call.get().whenComplete((users, e) -> latency.record(System.nanoTime() - start)));
+            }
+            CompletableFuture.allOf(batch.toArray(new CompletableFuture<?>[0])).join();
+        }
+
+        System.out.printf("%-11s p50 = %4d ms, p99 = %4d ms, p99.9 = %4d ms, backend calls/request = %.2f%n",
+                name,
+                latency.getPercentile(50, TimeUnit.MILLISECONDS),
+                latency.getPercentile(99, TimeUnit.MILLISECONDS),
+                latency.getPercentile(99.9, TimeUnit.MILLISECONDS),
+                (double) backendCalls.get() / requests);
+    }
+}
@@ -0,0 +1,70 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.model.IdBatch;
+import com.shariqparwez.model.User;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Allocation rate of the boxed supplyIDs -> fetchUsers pipeline (List<Long>, stream().map(User::new))
+// against the primitive one (IdBatch backed by long[], bulk User[] construction).
+// Stages run on the calling thread so allocation can be read from the current thread only.
+// Usage: IdPipelineBenchmark [idsPerBatch] [batches]
+public class IdPipelineBenchmark {
+    public static void main(String[] args) {
+        int idsPerBatch = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int batches = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        Supplier<List<Long>> boxedIds = () -> {
+            List<Long> ids = new ArrayList<>(idsPerBatch);
+            for (long id = 0; id < idsPerBatch; id++) {
+                ids.add(id + 1_000);
+            }
+            return ids;
+        };
+        Function<List<Long>, List<User>> boxedUsers = ids -> ids.stream().map(User::new).collect(Collectors.toList());
+
+        Supplier<IdBatch> primitiveIds = () -> IdBatch.range(1_000, 1_000 + idsPerBatch);
+        Function<IdBatch, User[]> primitiveUsers = IdBatch::toUsers;
+
+        // Run twice, the first round is warm up
+        for (int round = 0; round < 2; round++) {
+            run("boxed", idsPerBatch, batches, round == 1,
+                    () -> CompletableFuture.completedFuture(null)
+                            .thenApply(nil -> boxedIds.get())
+                            .thenApply(boxedUsers)
+                            .join().size());
+            run("primitive", idsPerBatch, batches, round == 1,
+                    () -> CompletableFuture.completedFuture(null)
+                            .thenApply(nil -> primitiveIds.get())
+                            .thenApply(primitiveUsers)
+                            .join().length);
+        }
+    }
+
+    private static void run(String name, int idsPerBatch, int batches, boolean print, Supplier<Integer> pipeline) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long users = 0;
+        for (int i = 0; i < batches; i++) {
+            users += pipeline.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        if (print) {
+            System.out.printf("%-10s ids/s = %12.0f, bytes/id = %6.1f, MB/s allocated = %8.1f%n",
+                    name, users / seconds, (double) allocated / ((long) idsPerBatch * batches),
+                    allocated / 1_048_576.0 / seconds);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.model.IdBatch;
+import com.shariqparwez.model.UserBatch;
+import com.shariqparwez.store.MappedResultStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Write throughput of MappedResultStore, and time to finish a job of 'ids' users (fetched in chunks, each
+// fetch parked for 'fetchMicros') from scratch against resuming it from a store 'completedPercent' full.
+// Resume includes reopening the file, rebuilding the index and fetching only the missing ids.
+// Usage: MappedResultStoreBenchmark [ids] [chunkSize] [fetchMicros] [completedPercent]
+public class MappedResultStoreBenchmark {
+    public static void main(String[] args) throws IOException {
+        int ids = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int chunkSize = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        long fetchMicros = args.length > 2 ? Long.parseLong(args[2]) : 1_000;
+        int completedPercent = args.length > 3 ? Integer.parseInt(args[3]) : 90;
+
+        Path file = Files.createTempFile("result-store-bench", ".bin");
+        try {
+            // Write throughput, ids already fetched
+            Files.deleteIfExists(file);
+            long start = System.nanoTime();
+            long forceNanos;
+            try (MappedResultStore store = MappedResultStore.open(file)) {
+                for (int from = 0; from < ids; from += chunkSize) {
+                    store.appendAll(UserBatch.of(IdBatch.range(from, Math.min(from + chunkSize, ids))));
+                }
+                long forceStart = System.nanoTime();
+                store.force();
+                forceNanos = System.nanoTime() - forceStart;
+            }
+            long writeNanos = System.nanoTime() - start;
+            System.out.printf("write   : %6d ms (force %d ms), %5.1f M records/s, %6.1f MB/s%n",
+                    writeNanos / 1_000_000, forceNanos / 1_000_000, ids * 1e3 / writeNanos,
+                    ids * 16 * 1e9 / writeNanos / (1024 * 1024));
+
+            // Job from scratch, every chunk fetched
+            start = System.nanoTime();
+            long fetched = 0;
+            for (int from = 0; from < ids; from += chunkSize) {
+                fetched += fetch(IdBatch.range(from, Math.min(from + chunkSize, ids)), fetchMicros).size();
+            }
+            System.out.printf("scratch : %6d ms, fetched = %d%n", (System.nanoTime() - start) / 1_000_000, fetched);
+
+            // Interrupted job, then resumed
+            Files.deleteIfExists(file);
+            int completed = (int) ((long) ids * completedPercent / 100);
+            try (MappedResultStore store = MappedResultStore.open(file)) {
+                for (int from = 0; from < completed; from += chunkSize) {
+                    store.appendAll(UserBatch.of(IdBatch.range(from, Math.min(from + chunkSize, completed))));
+                }
+            }
+            start = System.nanoTime();
+            fetched = 0;
+            long openNanos;
+            try (MappedResultStore store = MappedResultStore.open(file)) {
+                openNanos = System.nanoTime() - start;
+                for (int from = 0; from < ids; from += chunkSize) {
+                    IdBatch remaining = store.remainingUsers(IdBatch.range(from, Math.min(from + chunkSize, ids)));
+                    if (remaining.size() > 0) {
+                        fetched += store.appendAll(fetch(remaining, fetchMicros));
+                    }
+                }
+                System.out.printf("resume  : %6d ms (open + index %d ms, recovered %d), fetched = %d%n",
+                        (System.nanoTime() - start) / 1_000_000, openNanos / 1_000_000,
+                        store.getRecoveredCount(), fetched);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Stands in for a remote fetch of one chunk
+    private static UserBatch fetch(IdBatch ids, long fetchMicros) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(fetchMicros));
+        return UserBatch.of(ids);
+    }
+}
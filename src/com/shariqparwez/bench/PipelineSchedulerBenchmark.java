@@ -0,0 +1,123 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.executor.LatencyHistogram;
+import com.shariqparwez.model.User;
+import com.shariqparwez.pipeline.PipelineScheduler;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Per-pipeline latency and context switches of the supplyIDs -> fetchUsers -> displayer pipeline run the way
+// AsyncExample.asyncChainOperationFour does it (blocking pool, then executorTwo, then executorOne) against
+// PipelineScheduler, plus a CPU bound variant started on the scheduler's work-stealing workers with supply().
+// Context switches are summed over /proc/self/task/*/status, so they are Linux only.
+// Usage: PipelineSchedulerBenchmark [pipelines] [inFlight] [blockingMicros]
+public class PipelineSchedulerBenchmark {
+    public static void main(String[] args) throws Exception {
+        int pipelines = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int inFlight = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        long blockingMicros = args.length > 2 ? Long.parseLong(args[2]) : 50;
+
+        AtomicLong displayed = new AtomicLong();
+        Supplier<List<Long>> supplyIDs = () -> {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(blockingMicros));
+            return Arrays.asList(1L, 2L, 3L);
+        };
+        Supplier<List<Long>> computeIDs = () -> {
+            long until = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(blockingMicros);
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+            return Arrays.asList(1L, 2L, 3L);
+        };
+        Function<List<Long>, List<User>> fetchUsers = ids -> ids.stream().map(User::new).collect(Collectors.toList());
+        Consumer<List<User>> displayer = users -> displayed.addAndGet(users.size());
+
+        ExecutorService blocking = ExecutorFactory.newSharedExecutor("scheduler-bench-blocking", 16);
+        ExecutorService executorOne = ExecutorFactory.newSharedExecutor("scheduler-bench-one", 1);
+        ExecutorService executorTwo = ExecutorFactory.newSharedExecutor("scheduler-bench-two", 1);
+        PipelineScheduler scheduler = new PipelineScheduler("scheduler-bench", 2, blocking);
+        PipelineScheduler.Pipeline<Void> pipeline =
+                scheduler.supplyBlocking(supplyIDs).thenApply(fetchUsers).thenAccept(displayer);
+        // Never leaves the workers, idle ones steal queued pipelines from busy ones
+        PipelineScheduler.Pipeline<Void> computing =
+                scheduler.supply(computeIDs).thenApply(fetchUsers).thenAccept(displayer);
+
+        // Run twice, the first round is warm up
+        for (int round = 0; round < 2; round++) {
+            run("hand-chosen", pipelines, inFlight, round == 1, () ->
+                    CompletableFuture.supplyAsync(supplyIDs, blocking)
+                            .thenComposeAsync(ids -> CompletableFuture.supplyAsync(() -> fetchUsers.apply(ids),
+                                    executorTwo), executorTwo)
+                            .thenAcceptAsync(displayer, executorOne), null);
+            run("scheduler", pipelines, inFlight, round == 1, pipeline::start, scheduler);
+            run("sched-cpu", pipelines, inFlight, round == 1, computing::start, scheduler);
+        }
+        System.out.println("  " + scheduler);
+    }
+
+    private static void run(String name, int pipelines, int inFlight, boolean print,
+                            Supplier<CompletableFuture<Void>> pipeline, PipelineScheduler scheduler)
+            throws Exception {
+        LatencyHistogram latency = new LatencyHistogram();
+        Semaphore permits = new Semaphore(inFlight);
+
+        long stealsBefore = scheduler == null ? 0 : scheduler.getStealCount();
+        long switchesBefore = contextSwitches();
+        long start = System.nanoTime();
+        for (int i = 0; i < pipelines; i++) {
+            permits.acquire();
+            long startedAt = System.nanoTime();
+            pipeline.get().whenComplete((nil, e) -> {
+                latency.record(System.nanoTime() - startedAt);
+                permits.release();
+            });
+        }
+        permits.acquire(inFlight);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long switches = contextSwitches() - switchesBefore;
+        String steals = scheduler == null ? "" : ", steals = " + (scheduler.getStealCount() - stealsBefore);
+
+        if (print) {
+            System.out.printf("%-11s : %6d ms, p50 = %5d us, p99 = %6d us, context switches / pipeline = %.2f%s%n",
+                    name, millis, latency.getPercentile(50, TimeUnit.MICROSECONDS),
+                    latency.getPercentile(99, TimeUnit.MICROSECONDS), (double) switches / pipelines, steals);
+        }
+    }
+
+    // Voluntary and involuntary context switches of every live thread of this JVM
+    private static long contextSwitches() throws IOException {
+        long total = 0;
+        try (DirectoryStream<Path> tasks = Files.newDirectoryStream(Paths.get("/proc/self/task"))) {
+            for (Path task : tasks) {
+                try {
+                    for (String line : Files.readAllLines(task.resolve("status"))) {
+                        if (line.startsWith("voluntary_ctxt_switches")
+                                || line.startsWith("nonvoluntary_ctxt_switches")) {
+                            total += Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+                        }
+                    }
+                } catch (IOException e) {
+                    // Thread exited while reading
+                }
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,87 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.executor.InstrumentedExecutor;
+import com.shariqparwez.executor.LatencyHistogram;
+import com.shariqparwez.executor.PriorityExecutor;
+import com.shariqparwez.executor.RejectionPolicy;
+import com.shariqparwez.executor.TaskPriority;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Latency of interactive pipelines (3 async stages) started every 'intervalMillis' while 'bulk' bulk
+// pipelines (2 async stages) are queued at once, every stage parked for 'stageMicros'. Compares a FIFO
+// InstrumentedExecutor, a PriorityExecutor with bulk LOW and interactive HIGH, and one with interactive
+// pipelines tagged by a deadline 'budgetMillis' after they start. A bulk stage only gives way to work queued
+// less than four 'agingMillis' periods after it, a shorter period trades interactive latency for bulk latency.
+// Usage: PriorityExecutorBenchmark [threads] [bulk] [interactive] [intervalMillis] [stageMicros] [budgetMillis]
+//        [agingMillis]
+public class PriorityExecutorBenchmark {
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int bulk = args.length > 1 ? Integer.parseInt(args[1]) : 4_000;
+        int interactive = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        long intervalMillis = args.length > 3 ? Long.parseLong(args[3]) : 5;
+        long stageMicros = args.length > 4 ? Long.parseLong(args[4]) : 1_000;
+        long budgetMillis = args.length > 5 ? Long.parseLong(args[5]) : 20;
+        long agingMillis = args.length > 6 ? Long.parseLong(args[6]) : 500;
+
+        InstrumentedExecutor fifo = ExecutorFactory.newBoundedExecutor("priority-bench-fifo", threads,
+                bulk * 2 + interactive * 3, RejectionPolicy.ABORT, true);
+        run("fifo", bulk, interactive, intervalMillis, stageMicros, fifo, () -> fifo);
+        fifo.shutdown();
+
+        PriorityExecutor priority = ExecutorFactory.register(
+                new PriorityExecutor("priority-bench", threads, Duration.ofMillis(agingMillis), true));
+        run("priority", bulk, interactive, intervalMillis, stageMicros, priority.withPriority(TaskPriority.LOW),
+                () -> priority.withPriority(TaskPriority.HIGH));
+        run("deadline", bulk, interactive, intervalMillis, stageMicros, priority.withPriority(TaskPriority.LOW),
+                () -> priority.withDeadline(Duration.ofMillis(budgetMillis)));
+        priority.shutdown();
+    }
+
+    private static void run(String name, int bulk, int interactive, long intervalMillis, long stageMicros,
+                            Executor bulkExecutor, Supplier<Executor> interactiveExecutor) {
+        Function<Long, Long> stage = startedAt -> {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(stageMicros));
+            return startedAt;
+        };
+        LatencyHistogram bulkLatency = new LatencyHistogram();
+        LatencyHistogram interactiveLatency = new LatencyHistogram();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < bulk; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> start, bulkExecutor)
+                    .thenApplyAsync(stage, bulkExecutor)
+                    .thenAccept(startedAt -> bulkLatency.record(System.nanoTime() - startedAt)));
+        }
+        for (int i = 0; i < interactive; i++) {
+            // One tag for all the stages of the pipeline, so a deadline is shared by them
+            Executor executor = interactiveExecutor.get();
+            long startedAt = System.nanoTime();
+            futures.add(CompletableFuture.supplyAsync(() -> startedAt, executor)
+                    .thenApplyAsync(stage, executor)
+                    .thenApplyAsync(stage, executor)
+                    .thenAccept(begin -> interactiveLatency.record(System.nanoTime() - begin)));
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(intervalMillis));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+        System.out.printf("%-8s : %5d ms, interactive p50 = %5d ms, p99 = %5d ms, max = %5d ms"
+                        + " | bulk p99 = %5d ms, max = %5d ms%n",
+                name, (System.nanoTime() - start) / 1_000_000,
+                interactiveLatency.getPercentile(50, TimeUnit.MILLISECONDS),
+                interactiveLatency.getPercentile(99, TimeUnit.MILLISECONDS),
+                interactiveLatency.getMax(TimeUnit.MILLISECONDS),
+                bulkLatency.getPercentile(99, TimeUnit.MILLISECONDS), bulkLatency.getMax(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,84 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.executor.LatencyHistogram;
+import com.shariqparwez.resilience.RateLimiter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Cost of RateLimiter.acquire() for 'threads' threads together offering 'offeredPerSecond' acquires against a
+// limiter of 'permitsPerSecond'. Each thread sends its share in one burst per millisecond. Reports the time
+// spent inside acquire() (sampled every 64 calls), against a loop handing out completed futures, and the rate
+// of permits actually granted. Offering more than the limit shows delayed and rejected acquires.
+// Usage: RateLimiterBenchmark [threads] [offeredPerSecond] [permitsPerSecond] [seconds] [burst] [maxWaitMillis]
+public class RateLimiterBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        long offered = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+        double permitsPerSecond = args.length > 2 ? Double.parseDouble(args[2]) : 1_000_000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        int burst = args.length > 4 ? Integer.parseInt(args[4]) : 1_000;
+        long maxWaitMillis = args.length > 5 ? Long.parseLong(args[5]) : 50;
+
+        run("baseline", threads, offered, seconds, () -> CompletableFuture.completedFuture(null));
+        RateLimiter limiter = new RateLimiter("bench", permitsPerSecond, burst, Duration.ofMillis(maxWaitMillis));
+        run("limiter", threads, offered, seconds, limiter::acquire);
+        System.out.println("  " + limiter);
+    }
+
+    private static void run(String name, int threads, long offered, int seconds,
+                            Supplier<CompletableFuture<Void>> acquire) throws InterruptedException {
+        LatencyHistogram callTime = new LatencyHistogram();
+        LongAdder calls = new LongAdder();
+        LongAdder granted = new LongAdder();
+        LongAdder refused = new LongAdder();
+        int perMillisecond = (int) Math.max(1, offered / threads / 1_000);
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                long next = System.nanoTime();
+                int call = 0;
+                while (next - end < 0) {
+                    for (int i = 0; i < perMillisecond; i++) {
+                        long before = (++call & 63) == 0 ? System.nanoTime() : 0;
+                        CompletableFuture<Void> permit = acquire.get();
+                        if (before != 0) {
+                            callTime.record(System.nanoTime() - before);
+                        }
+                        permit.whenComplete((nil, e) -> (e == null ? granted : refused).increment());
+                    }
+                    calls.add(perMillisecond);
+                    // A thread which fell behind skips the bursts it missed instead of sending them late at once
+                    next = Math.max(next + TimeUnit.MILLISECONDS.toNanos(1), System.nanoTime());
+                    LockSupport.parkNanos(next - System.nanoTime());
+                }
+            }, "rate-bench-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        // Let the permits already reserved be released
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (granted.sum() + refused.sum() < calls.sum() && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+        }
+
+        System.out.printf("%-8s : offered = %8.0f/s, granted = %8.0f/s, refused = %7d, acquire mean = %4.0f ns,"
+                        + " p99 = %5d ns, max = %6d us%n",
+                name, calls.sum() / elapsed, granted.sum() / elapsed, refused.sum(),
+                callTime.getMean(TimeUnit.NANOSECONDS), callTime.getPercentile(99, TimeUnit.NANOSECONDS),
+                callTime.getMax(TimeUnit.MICROSECONDS));
+    }
+}
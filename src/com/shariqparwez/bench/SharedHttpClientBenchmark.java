@@ -0,0 +1,61 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.http.SharedHttpClient;
+import com.shariqparwez.http.StubHttpServer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+// Compares a new HttpClient per request (what HttpClientExample does) with one SharedHttpClient,
+// against a local StubHttpServer so it runs offline.
+// Usage: SharedHttpClientBenchmark [requests] [bodySize] [serverDelayMillis]
+public class SharedHttpClientBenchmark {
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int bodySize = args.length > 1 ? Integer.parseInt(args[1]) : 16 * 1024;
+        long delayMillis = args.length > 2 ? Long.parseLong(args[2]) : 5;
+
+        try (StubHttpServer server = new StubHttpServer(bodySize, delayMillis)) {
+            URI uri = server.uri("/users");
+
+            run("new-client-per-call", server, uri, requests, request -> HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .build()
+                    .sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+
+            for (HttpClient.Version version : HttpClient.Version.values()) {
+                SharedHttpClient shared = new SharedHttpClient(version, Duration.ofSeconds(2), Duration.ofSeconds(10),
+                        32, ExecutorFactory.newSharedExecutor("bench-http-" + version, 4));
+                run("shared-" + version, server, uri, requests,
+                        request -> shared.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+                System.out.println("  " + shared);
+            }
+        }
+    }
+
+    private static void run(String name, StubHttpServer server, URI uri, int requests,
+                            Function<HttpRequest, CompletableFuture<HttpResponse<String>>> send) {
+        server.resetCounters();
+        HttpRequest request = HttpRequest.newBuilder().GET().uri(uri).build();
+
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            futures.add(send.apply(request));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        System.out.printf("%-20s requests/s = %8.1f, connections = %4d, requests per connection = %6.1f%n",
+                name, requests / seconds, server.getConnectionCount(),
+                (double) server.getRequestCount() / Math.max(1, server.getConnectionCount()));
+    }
+}
@@ -0,0 +1,105 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.executor.LatencyHistogram;
+import com.shariqparwez.http.SingleFlightHttpClient;
+import com.shariqparwez.http.StubHttpServer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Upstream requests and latency for a Zipf-skewed set of URIs against a StubHttpServer, sent with plain
+// HttpClient.sendAsync, through SingleFlightHttpClient, and through SingleFlightHttpClient with a short TTL.
+// Usage: SingleFlightBenchmark [requests] [inFlight] [paths] [zipfExponent] [serverDelayMillis] [ttlMillis]
+public class SingleFlightBenchmark {
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int inFlight = args.length > 1 ? Integer.parseInt(args[1]) : 128;
+        int paths = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+        double exponent = args.length > 3 ? Double.parseDouble(args[3]) : 1.1;
+        long delayMillis = args.length > 4 ? Long.parseLong(args[4]) : 20;
+        long ttlMillis = args.length > 5 ? Long.parseLong(args[5]) : 100;
+
+        double[] cumulative = zipf(paths, exponent);
+        try (StubHttpServer server = new StubHttpServer(4 * 1024, delayMillis)) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(ExecutorFactory.newSharedExecutor("single-flight-bench-http", 4))
+                    .build();
+            HttpRequest[] catalog = new HttpRequest[paths];
+            for (int i = 0; i < paths; i++) {
+                catalog[i] = HttpRequest.newBuilder(server.uri("/users/" + i)).GET().build();
+            }
+            URI warmUp = server.uri("/warm-up");
+            client.send(HttpRequest.newBuilder(warmUp).build(), HttpResponse.BodyHandlers.discarding());
+
+            server.resetCounters();
+            run("plain", server, requests, inFlight, cumulative, catalog,
+                    request -> client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+
+            SingleFlightHttpClient<String> collapsing =
+                    new SingleFlightHttpClient<>(client, HttpResponse.BodyHandlers.ofString());
+            server.resetCounters();
+            run("singleflight", server, requests, inFlight, cumulative, catalog, collapsing::sendAsync);
+            System.out.println("  " + collapsing);
+
+            SingleFlightHttpClient<String> caching = new SingleFlightHttpClient<>(client,
+                    HttpResponse.BodyHandlers.ofString(), Collections.emptyList(), Duration.ofMillis(ttlMillis));
+            server.resetCounters();
+            run("singleflight+ttl", server, requests, inFlight, cumulative, catalog, caching::sendAsync);
+            System.out.println("  " + caching);
+        }
+    }
+
+    private static void run(String name, StubHttpServer server, int requests, int inFlight, double[] cumulative,
+                            HttpRequest[] catalog, Function<HttpRequest, CompletableFuture<HttpResponse<String>>> send)
+            throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        Semaphore permits = new Semaphore(inFlight);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            permits.acquire();
+            HttpRequest request = catalog[sample(cumulative, ThreadLocalRandom.current().nextDouble())];
+            long sentAt = System.nanoTime();
+            send.apply(request).whenComplete((response, e) -> {
+                latency.record(System.nanoTime() - sentAt);
+                permits.release();
+            });
+        }
+        permits.acquire(inFlight);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("%-16s : %6d ms, upstream = %6d (%5.1f%%), p50 = %4d ms, p99 = %4d ms%n",
+                name, millis, server.getRequestCount(), 100.0 * server.getRequestCount() / requests,
+                latency.getPercentile(50, TimeUnit.MILLISECONDS), latency.getPercentile(99, TimeUnit.MILLISECONDS));
+    }
+
+    // Cumulative distribution of a Zipf law over indexes 0..n-1
+    private static double[] zipf(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, double uniform) {
+        int index = Arrays.binarySearch(cumulative, uniform);
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
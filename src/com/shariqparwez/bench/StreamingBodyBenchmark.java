@@ -0,0 +1,79 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.http.SharedHttpClient;
+import com.shariqparwez.http.StreamingBodySubscriber;
+import com.shariqparwez.http.StubHttpServer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.function.Function;
+
+// Compares BodyHandlers.ofString() + body().length() with StreamingBodySubscriber on multi-MB bodies.
+// Reports peak heap (sum of heap pool peaks) and bytes allocated per request across all live threads.
+// Allocation of threads that die during a run is not counted; run with a fixed heap, e.g. -Xmx512m.
+// Usage: StreamingBodyBenchmark [requests] [bodyMegabytes]
+public class StreamingBodyBenchmark {
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int bodyMegabytes = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        SharedHttpClient client = new SharedHttpClient(HttpClient.Version.HTTP_1_1, Duration.ofSeconds(2),
+                Duration.ofSeconds(30), 4, ExecutorFactory.newSharedExecutor("bench-streaming", 2));
+
+        try (StubHttpServer server = new StubHttpServer(bodyMegabytes * 1024 * 1024, 0)) {
+            HttpRequest request = HttpRequest.newBuilder().GET().uri(server.uri("/large")).build();
+
+            // Warm up both paths before measuring
+            run("warmup-string", requests / 4 + 1, request,
+                    r -> (long) client.send(r, HttpResponse.BodyHandlers.ofString()).body().length(), false);
+            run("warmup-stream", requests / 4 + 1, request,
+                    r -> client.send(r, StreamingBodySubscriber.handler()).body().getLength(), false);
+
+            run("ofString", requests, request,
+                    r -> (long) client.send(r, HttpResponse.BodyHandlers.ofString()).body().length(), true);
+            run("streaming", requests, request,
+                    r -> client.send(r, StreamingBodySubscriber.handler()).body().getLength(), true);
+        }
+    }
+
+    private static void run(String name, int requests, HttpRequest request, Function<HttpRequest, Long> send,
+                            boolean print) {
+        System.gc();
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+        long allocatedBefore = allocatedBytes();
+
+        long start = System.nanoTime();
+        long bytes = 0;
+        for (int i = 0; i < requests; i++) {
+            bytes += send.apply(request);
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        long allocated = allocatedBytes() - allocatedBefore;
+        long peakHeap = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+
+        if (print) {
+            System.out.printf("%-10s MB/s = %7.1f, peak heap = %6d MB, allocated/request = %8d KB%n",
+                    name, bytes / 1_048_576.0 / seconds, peakHeap / 1_048_576, allocated / requests / 1024);
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, allocated);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,95 @@
+package com.shariqparwez.bench;
+
+import com.shariqparwez.loader.UserLoader;
+import com.shariqparwez.model.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Compares the per-list fetchUsers function used by the examples against UserLoader,
+// with many concurrent pipelines each asking for 3 ids.
+// Usage: UserLoaderBenchmark [pipelines] [threads] [idRange]
+public class UserLoaderBenchmark {
+    public static void main(String[] args) {
+        int pipelines = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int idRange = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+
+        List<List<Long>> workload = new ArrayList<>(pipelines);
+        for (int i = 0; i < pipelines; i++) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            workload.add(Arrays.asList(
+                    (long) random.nextInt(idRange), (long) random.nextInt(idRange), (long) random.nextInt(idRange)));
+        }
+
+        runPerList(workload, threads);
+        runLoader(workload, threads);
+    }
+
+    private static void runPerList(List<List<Long>> workload, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicLong backendCalls = new AtomicLong();
+        Function<List<Long>, List<User>> fetchUsers = fetchUsers(backendCalls);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<List<User>>> futures = new ArrayList<>(workload.size());
+        for (List<Long> ids : workload) {
+            futures.add(CompletableFuture.supplyAsync(() -> fetchUsers.apply(ids), executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        report("per-list", workload.size(), backendCalls.get(), System.nanoTime() - start);
+
+        executor.shutdown();
+    }
+
+    private static void runLoader(List<List<Long>> workload, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicLong backendCalls = new AtomicLong();
+
+        long start = System.nanoTime();
+        try (UserLoader loader = new UserLoader(fetchUsers(backendCalls), 256, Duration.ofMillis(5), executor)) {
+            List<CompletableFuture<List<User>>> futures = new ArrayList<>(workload.size());
+            for (List<Long> ids : workload) {
+                futures.add(loader.loadMany(ids));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            report("loader", workload.size(), backendCalls.get(), System.nanoTime() - start);
+            System.out.println("  loads = " + loader.getLoadCount()
+                    + ", deduplicated = " + loader.getDeduplicatedCount()
+                    + ", batches = " + loader.getBatchCount());
+        }
+
+        executor.shutdown();
+    }
+
+    // Same shape as the examples: a fixed 300 ms per invocation regardless of list size
+    private static Function<List<Long>, List<User>> fetchUsers(AtomicLong backendCalls) {
+        return ids -> {
+            backendCalls.incrementAndGet();
+            sleep(300);
+            return ids.stream().map(User::new).collect(Collectors.toList());
+        };
+    }
+
+    private static void report(String name, int pipelines, long backendCalls, long elapsedNanos) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        System.out.printf("%-8s pipelines = %d, backend calls = %d, elapsed = %.2f s, pipelines/s = %.1f%n",
+                name, pipelines, backendCalls, seconds, pipelines / seconds);
+    }
+
+    private static void sleep(int timeout) {
+        try {
+            Thread.sleep(timeout);
+        } catch (InterruptedException e) {
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.shariqparwez.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Read-through cache of CompletableFuture values keyed by id.
+//
+// Concurrent callers for the same key share one in-flight load. Entries are evicted least recently
+// used once maximumSize is reached, expire expireAfterWrite after their load completed, and are
+// reloaded in the background on the first read after refreshAfterWrite (the old value keeps being
+// served until the reload succeeds). Failed loads are not cached.
+public class AsyncLoadingCache<K, V> {
+    private final Function<K, CompletableFuture<V>> loader;
+    private final int maximumSize;
+    private final long expireNanos;
+    private final long refreshNanos;
+
+    // Access ordered, so iteration starts at the least recently used entry. Guarded by 'this'
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loadSuccesses = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final AtomicLong totalLoadNanos = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public AsyncLoadingCache(Function<K, CompletableFuture<V>> loader, int maximumSize,
+                             Duration expireAfterWrite, Duration refreshAfterWrite) {
+        if (refreshAfterWrite.compareTo(expireAfterWrite) >= 0) {
+            throw new IllegalArgumentException("refreshAfterWrite must be shorter than expireAfterWrite");
+        }
+        this.loader = loader;
+        this.maximumSize = maximumSize;
+        this.expireNanos = expireAfterWrite.toNanos();
+        this.refreshNanos = refreshAfterWrite.toNanos();
+    }
+
+    public CompletableFuture<V> get(K key) {
+        Entry<V> entry;
+        boolean load = false;
+        boolean refresh = false;
+        long now = System.nanoTime();
+
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.isExpired(now, expireNanos)) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                entry = new Entry<>(new CompletableFuture<>());
+                entries.put(key, entry);
+                evictIfNeeded();
+                load = true;
+            } else {
+                hits.incrementAndGet();
+                if (entry.needsRefresh(now, refreshNanos)) {
+                    entry.refreshing = true;
+                    refresh = true;
+                }
+            }
+        }
+
+        // Loads run outside the lock; only the first caller for a key gets here
+        if (load) {
+            load(key, entry);
+        } else if (refresh) {
+            refresh(key, entry);
+        }
+        // Each caller gets its own future, so one cancelling or failing it does not poison the entry
+        return entry.future.copy();
+    }
+
+    public CompletableFuture<List<V>> getAll(List<K> keys) {
+        List<CompletableFuture<V>> futures = new ArrayList<>(keys.size());
+        keys.forEach(key -> futures.add(get(key)));
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(nil -> {
+                    List<V> values = new ArrayList<>(futures.size());
+                    futures.forEach(future -> values.add(future.join()));
+                    return values;
+                });
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.get(), misses.get(), loadSuccesses.get(), loadFailures.get(),
+                totalLoadNanos.get(), refreshes.get(), evictions.get());
+    }
+
+    private void load(K key, Entry<V> entry) {
+        CompletableFuture<V> target = entry.future;
+        callLoader(key).whenComplete((value, e) -> {
+            if (e != null) {
+                // Do not keep failures around, the next get retries
+                synchronized (this) {
+                    entries.remove(key, entry);
+                }
+                target.completeExceptionally(e);
+            } else {
+                entry.writtenAt = System.nanoTime();
+                target.complete(value);
+            }
+        });
+    }
+
+    private void refresh(K key, Entry<V> entry) {
+        refreshes.incrementAndGet();
+        callLoader(key).whenComplete((value, e) -> {
+            if (e == null) {
+                entry.future = CompletableFuture.completedFuture(value);
+                entry.writtenAt = System.nanoTime();
+            }
+            entry.refreshing = false;
+        });
+    }
+
+    private CompletableFuture<V> callLoader(K key) {
+        long start = System.nanoTime();
+        CompletableFuture<V> future;
+        try {
+            future = loader.apply(key);
+        } catch (Throwable e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((value, e) -> {
+            totalLoadNanos.addAndGet(System.nanoTime() - start);
+            (e == null ? loadSuccesses : loadFailures).incrementAndGet();
+        });
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maximumSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static class Entry<V> {
+        volatile CompletableFuture<V> future;
+        // 0 while the first load is still in flight
+        volatile long writtenAt;
+        volatile boolean refreshing;
+
+        Entry(CompletableFuture<V> future) {
+            this.future = future;
+        }
+
+        boolean isExpired(long now, long expireNanos) {
+            return writtenAt != 0 && now - writtenAt >= expireNanos;
+        }
+
+        boolean needsRefresh(long now, long refreshNanos) {
+            return writtenAt != 0 && !refreshing && now - writtenAt >= refreshNanos;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.shariqparwez.cache;
+
+// Point in time counters of an AsyncLoadingCache
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long loadSuccesses;
+    private final long loadFailures;
+    private final long totalLoadNanos;
+    private final long refreshes;
+    private final long evictions;
+
+    public CacheStats(long hits, long misses, long loadSuccesses, long loadFailures, long totalLoadNanos,
+                      long refreshes, long evictions) {
+        this.hits = hits;
+        this.misses = misses;
+        this.loadSuccesses = loadSuccesses;
+        this.loadFailures = loadFailures;
+        this.totalLoadNanos = totalLoadNanos;
+        this.refreshes = refreshes;
+        this.evictions = evictions;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    public long getLoadSuccesses() {
+        return loadSuccesses;
+    }
+
+    public long getLoadFailures() {
+        return loadFailures;
+    }
+
+    public double getAverageLoadMillis() {
+        long loads = loadSuccesses + loadFailures;
+        return loads == 0 ? 0 : totalLoadNanos / 1_000_000.0 / loads;
+    }
+
+    public long getRefreshes() {
+        return refreshes;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats [hits=" + hits + ", misses=" + misses
+                + ", hitRatio=" + String.format("%.3f", getHitRatio())
+                + ", loads=" + loadSuccesses + ", loadFailures=" + loadFailures
+                + ", avgLoad=" + String.format("%.2f", getAverageLoadMillis()) + "ms"
+                + ", refreshes=" + refreshes + ", evictions=" + evictions + "]";
+    }
+}
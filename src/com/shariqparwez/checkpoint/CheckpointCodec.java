@@ -0,0 +1,56 @@
+package com.shariqparwez.checkpoint;
+
+import com.shariqparwez.model.User;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// How a stage output is written to and read back from the checkpoint log
+public interface CheckpointCodec<T> {
+    byte[] encode(T value);
+
+    T decode(byte[] bytes);
+
+    // 8 bytes per id
+    static CheckpointCodec<List<Long>> ids() {
+        return new CheckpointCodec<List<Long>>() {
+            @Override
+            public byte[] encode(List<Long> ids) {
+                ByteBuffer buffer = ByteBuffer.allocate(ids.size() * Long.BYTES);
+                ids.forEach(buffer::putLong);
+                return buffer.array();
+            }
+
+            @Override
+            public List<Long> decode(byte[] bytes) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                List<Long> ids = new ArrayList<>(bytes.length / Long.BYTES);
+                while (buffer.hasRemaining()) {
+                    ids.add(buffer.getLong());
+                }
+                return ids;
+            }
+        };
+    }
+
+    // A user is its id, 8 bytes per user
+    static CheckpointCodec<List<User>> users() {
+        CheckpointCodec<List<Long>> ids = ids();
+        return new CheckpointCodec<List<User>>() {
+            @Override
+            public byte[] encode(List<User> users) {
+                ByteBuffer buffer = ByteBuffer.allocate(users.size() * Long.BYTES);
+                users.forEach(user -> buffer.putLong(user.getId()));
+                return buffer.array();
+            }
+
+            @Override
+            public List<User> decode(byte[] bytes) {
+                List<User> users = new ArrayList<>(bytes.length / Long.BYTES);
+                ids.decode(bytes).forEach(id -> users.add(new User(id)));
+                return users;
+            }
+        };
+    }
+}
@@ -0,0 +1,285 @@
+package com.shariqparwez.checkpoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// Write-ahead log of completed stage outputs, keyed by stage name.
+//
+// Every entry is [length][crc32][stage name length][stage name][payload]. Appends are queued and a single
+// writer thread writes all the entries queued so far in one call followed by one fsync (group commit), so
+// appenders arriving while an fsync is running share the next one. The future returned by append completes
+// once the entry is on disk. Opening an existing log reads back the entries up to the first torn or corrupt
+// one, cuts the file there, and keeps the last payload of each stage. After a failed write or fsync the log
+// stops: what reached the disk is unknown, so that batch and every later append fail.
+public class CheckpointLog implements AutoCloseable {
+    private static final int HEADER_BYTES = 10;
+    private static final int MAX_BATCH = 1024;
+    private static final Pending CLOSE = new Pending(null, null);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<String, byte[]> recovered = new ConcurrentHashMap<>();
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final long recoveryNanos;
+
+    private final AtomicLong appends = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    private CheckpointLog(Path file) throws IOException {
+        long start = System.nanoTime();
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channel.position(recover());
+        this.recoveryNanos = System.nanoTime() - start;
+        this.writer = new Thread(this::drain, "checkpoint-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public static CheckpointLog open(Path file) throws IOException {
+        return new CheckpointLog(file);
+    }
+
+    // Completes once the entry and every entry appended before it are on disk
+    public CompletableFuture<Void> append(String stage, byte[] payload) {
+        Objects.requireNonNull(stage, "stage");
+        Objects.requireNonNull(payload, "payload");
+        Pending pending = new Pending(stage, payload);
+        if (pending.name.length > 0xFFFF) {
+            throw new IllegalArgumentException("Stage name longer than 65535 bytes: " + pending.name.length);
+        }
+        if (closed || failure != null) {
+            pending.committed.completeExceptionally(unavailable());
+            return pending.committed;
+        }
+        appends.incrementAndGet();
+        queue.add(pending);
+        // close() may have run since the check above, with the writer gone before this entry was queued.
+        // If it is still queued nobody else will take it, and if it is not the writer has it
+        if (closed && queue.remove(pending)) {
+            pending.committed.completeExceptionally(unavailable());
+        }
+        return pending.committed;
+    }
+
+    // Payload of the stage found when the log was opened, or null if the stage had not completed
+    public byte[] get(String stage) {
+        return recovered.get(stage);
+    }
+
+    public int getRecoveredCount() {
+        return recovered.size();
+    }
+
+    // Time taken to read back and validate the log when it was opened
+    public long getRecoveryNanos() {
+        return recoveryNanos;
+    }
+
+    public long getAppendCount() {
+        return appends.get();
+    }
+
+    // Number of fsyncs, each one covering every entry written since the previous one
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    public long getByteCount() {
+        return bytes.get();
+    }
+
+    // Waits until every appended entry is on disk, then stops the writer
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        queue.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "CheckpointLog [file=" + file + ", recovered=" + recovered.size() + ", appends=" + appends.get()
+                + ", commits=" + commits.get() + ", bytes=" + bytes.get() + "]";
+    }
+
+    private IllegalStateException unavailable() {
+        IOException cause = failure;
+        return cause == null
+                ? new IllegalStateException("Checkpoint log is closed: " + file)
+                : new IllegalStateException("Checkpoint log failed: " + file, cause);
+    }
+
+    // Returns the end of the last valid entry, where the next one is written.
+    // Read entry by entry with long offsets rather than mapped, so a log over 2 GB recovers too
+    private long recover() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(8);
+        ByteBuffer entry = ByteBuffer.allocate(64 * 1024);
+        CRC32 crc = new CRC32();
+        long position = 0;
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            if (!readFully(header, position)) {
+                break;
+            }
+            int length = header.getInt(0);
+            int checksum = header.getInt(4);
+            if (length < 2 || position + 8L + length > size) {
+                break;
+            }
+            if (entry.capacity() < length) {
+                entry = ByteBuffer.allocate(Math.max(length, entry.capacity() * 2));
+            }
+            entry.clear().limit(length);
+            if (!readFully(entry, position + 8)) {
+                break;
+            }
+            crc.reset();
+            crc.update(entry.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            entry.flip();
+            byte[] name = new byte[entry.getShort() & 0xFFFF];
+            entry.get(name);
+            byte[] payload = new byte[entry.remaining()];
+            entry.get(payload);
+            recovered.put(new String(name, StandardCharsets.UTF_8), payload);
+            position += 8 + length;
+        }
+        // Anything past the last valid entry is a write the crash cut short
+        if (position < size) {
+            channel.truncate(position);
+        }
+        return position;
+    }
+
+    // False if the file ends before the buffer is full
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        CRC32 crc = new CRC32();
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            stopping = batch.remove(CLOSE);
+            if (batch.isEmpty()) {
+                continue;
+            }
+            if (failure != null) {
+                batch.forEach(pending -> pending.committed.completeExceptionally(unavailable()));
+                batch.clear();
+                continue;
+            }
+
+            buffer = encode(batch, buffer, crc);
+            long committedPosition = -1;
+            try {
+                committedPosition = channel.position();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                commits.incrementAndGet();
+                batch.forEach(pending -> pending.committed.complete(null));
+            } catch (IOException e) {
+                failure = e;
+                discardFrom(committedPosition);
+                batch.forEach(pending -> pending.committed.completeExceptionally(e));
+            }
+            batch.clear();
+        }
+        // Appends which raced with close
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(pending -> pending.committed.completeExceptionally(unavailable()));
+    }
+
+    // Best effort: drops the half written batch, so the entries reported as failed are not read back on restart
+    private void discardFrom(long position) {
+        if (position < 0) {
+            return;
+        }
+        try {
+            channel.truncate(position);
+        } catch (IOException e) {
+            // Recovery still stops at the first torn entry
+        }
+    }
+
+    // Packs the batch into the buffer, grown when too small, and returns it ready to be written
+    private ByteBuffer encode(List<Pending> batch, ByteBuffer buffer, CRC32 crc) {
+        int total = 0;
+        for (Pending pending : batch) {
+            total += 8 + pending.length();
+        }
+        if (buffer.capacity() < total) {
+            buffer = ByteBuffer.allocate(Math.max(total, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        for (Pending pending : batch) {
+            int start = buffer.position();
+            buffer.putInt(pending.length()).putInt(0)
+                    .putShort((short) pending.name.length).put(pending.name).put(pending.payload);
+            crc.reset();
+            crc.update(buffer.array(), start + 8, pending.length());
+            buffer.putInt(start + 4, (int) crc.getValue());
+        }
+        bytes.addAndGet(total);
+        return buffer.flip();
+    }
+
+    private static class Pending {
+        final byte[] name;
+        final byte[] payload;
+        final CompletableFuture<Void> committed = new CompletableFuture<>();
+
+        Pending(String stage, byte[] payload) {
+            this.name = stage == null ? null : stage.getBytes(StandardCharsets.UTF_8);
+            this.payload = payload;
+        }
+
+        int length() {
+            return 2 + name.length + payload.length;
+        }
+    }
+}
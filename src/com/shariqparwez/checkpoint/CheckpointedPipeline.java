@@ -0,0 +1,87 @@
+package com.shariqparwez.checkpoint;
+
+import com.shariqparwez.executor.LatencyHistogram;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Chains stages whose outputs are checkpointed in a CheckpointLog, so a chain rebuilt after a crash skips
+// the stages which already completed.
+//
+// A stage found in the log is not run again, it completes with the output decoded from the log. Otherwise
+// the stage runs, and its output is encoded and appended to the log before the next stage can start: the
+// stage's own thread waits for the group commit, so the next stage never runs on the log writer thread.
+// Stages must have unique names within a log.
+public class CheckpointedPipeline {
+    private static final byte[] DONE = new byte[0];
+
+    private final CheckpointLog log;
+    private final Map<String, LatencyHistogram> overhead = new ConcurrentHashMap<>();
+    private final Set<String> skipped = ConcurrentHashMap.newKeySet();
+
+    public CheckpointedPipeline(CheckpointLog log) {
+        this.log = log;
+    }
+
+    public <T> CompletableFuture<T> thenSupply(CompletableFuture<?> start, String stage, Supplier<T> supplier,
+                                               CheckpointCodec<T> codec) {
+        return thenApply(start, stage, nil -> supplier.get(), codec);
+    }
+
+    public <T, R> CompletableFuture<R> thenApply(CompletableFuture<T> previous, String stage, Function<T, R> function,
+                                                 CheckpointCodec<R> codec) {
+        byte[] saved = log.get(stage);
+        if (saved != null) {
+            skipped.add(stage);
+            return previous.thenApply(ignored -> codec.decode(saved));
+        }
+        return previous.thenApply(input -> {
+            R output = function.apply(input);
+            long start = System.nanoTime();
+            log.append(stage, codec.encode(output)).join();
+            overheadOf(stage).record(System.nanoTime() - start);
+            return output;
+        });
+    }
+
+    // Only the completion of the stage is checkpointed, it has no output
+    public <T> CompletableFuture<Void> thenAccept(CompletableFuture<T> previous, String stage, Consumer<T> consumer) {
+        if (log.get(stage) != null) {
+            skipped.add(stage);
+            return previous.thenAccept(ignored -> {
+            });
+        }
+        return previous.thenAccept(input -> {
+            consumer.accept(input);
+            long start = System.nanoTime();
+            log.append(stage, DONE).join();
+            overheadOf(stage).record(System.nanoTime() - start);
+        });
+    }
+
+    // True if the stage was found in the log and will not run
+    public boolean isSkipped(String stage) {
+        return skipped.contains(stage);
+    }
+
+    // Time spent encoding the stage's output and waiting for it to be on disk, empty for a stage not checkpointed
+    public LatencyHistogram getOverhead(String stage) {
+        // Not computeIfAbsent: asking about a skipped stage must not list it as checkpointed
+        LatencyHistogram histogram = overhead.get(stage);
+        return histogram != null ? histogram : new LatencyHistogram();
+    }
+
+    @Override
+    public String toString() {
+        return "CheckpointedPipeline [skipped=" + skipped + ", checkpointed=" + overhead.keySet() + "]";
+    }
+
+    private LatencyHistogram overheadOf(String stage) {
+        return overhead.computeIfAbsent(stage, name -> new LatencyHistogram());
+    }
+}
@@ -0,0 +1,91 @@
+package com.shariqparwez.executor;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+// Where the blocking stages (supplyIDs, fetchUsers, fetchEmails) of the pipelines run.
+//
+// Picked with -Dpipeline.execution.mode=common|fixed|virtual (default common), and
+// -Dpipeline.execution.threads=<n> for the size of the fixed pool (default 64).
+public enum ExecutionMode {
+    // ForkJoinPool.commonPool(), what supplyAsync uses when no executor is given
+    COMMON,
+    // Bounded, instrumented pool from ExecutorFactory
+    FIXED,
+    // One virtual thread per task (needs Java 21 or later at runtime)
+    VIRTUAL;
+
+    public static ExecutionMode configured() {
+        String mode = System.getProperty("pipeline.execution.mode", COMMON.name());
+        try {
+            return valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unknown pipeline.execution.mode '" + mode + "', valid values are "
+                    + validValues(), e);
+        }
+    }
+
+    // Shared executor for the configured mode, created on first use.
+    // The mode is checked here, outside the holder: a failure in its initializer would surface as
+    // ExceptionInInitializerError once, then as NoClassDefFoundError on every later call.
+    public static Executor blockingStages() {
+        ExecutionMode mode = configured();
+        if (mode == VIRTUAL && !isVirtualSupported()) {
+            throw new IllegalStateException("pipeline.execution.mode=virtual needs Java 21 or later, running on "
+                    + System.getProperty("java.version") + ", valid values here are " + validValues());
+        }
+        return BlockingStages.EXECUTOR;
+    }
+
+    public Executor newExecutor(String name, int threads) {
+        switch (this) {
+            case FIXED:
+                return ExecutorFactory.newSharedExecutor(name, threads);
+            case VIRTUAL:
+                return newVirtualThreadPerTaskExecutor();
+            case COMMON:
+            default:
+                return ForkJoinPool.commonPool();
+        }
+    }
+
+    public static boolean isVirtualSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static String validValues() {
+        return Arrays.stream(values())
+                .filter(mode -> mode != VIRTUAL || isVirtualSupported())
+                .map(mode -> mode.name().toLowerCase(Locale.ROOT))
+                .collect(Collectors.joining(", "));
+    }
+
+    // Looked up reflectively so the project still compiles for runtimes older than Java 21
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads need Java 21 or later, running on " + System.getProperty("java.version"), e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create virtual thread executor", e);
+        }
+    }
+
+    private static class BlockingStages {
+        private static final Executor EXECUTOR = configured()
+                .newExecutor("blocking-stages", Integer.getInteger("pipeline.execution.threads", 64));
+    }
+}
@@ -0,0 +1,101 @@
+package com.shariqparwez.executor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+// Shared factory for named, bounded and instrumented thread pools.
+//
+// Configured through system properties so pipelines can be switched without editing code:
+//   executor.factory.mode        bounded (default) or jdk, which falls back to the unbounded Executors pools
+//   executor.<name>.threads      pool size
+//   executor.<name>.queue        queue capacity (default executor.default.queue, 1000)
+//   executor.<name>.policy       ABORT, CALLER_RUNS, DISCARD or BLOCK (default executor.default.policy, BLOCK)
+//   executor.<name>.blockMillis  how long BLOCK waits for queue space (default 1000)
+//   executor.<name>.agingMillis  aging period of priority executors (default 250)
+public class ExecutorFactory {
+    private static final Map<String, InstrumentedExecutor> EXECUTORS = new ConcurrentHashMap<>();
+
+    private ExecutorFactory() {
+    }
+
+    public static ExecutorService newSingleThreadExecutor(String name) {
+        return newExecutor(name, 1);
+    }
+
+    public static ExecutorService newExecutor(String name, int threads) {
+        return newExecutor(name, threads, false);
+    }
+
+    // Shared pools outlive any single pipeline, so their threads are daemon and never hold the JVM open
+    public static ExecutorService newSharedExecutor(String name, int threads) {
+        return newExecutor(name, threads, true);
+    }
+
+    public static InstrumentedExecutor newBoundedExecutor(String name, int threads, int queueCapacity,
+                                                          RejectionPolicy policy) {
+        return newBoundedExecutor(name, threads, queueCapacity, policy, false);
+    }
+
+    public static InstrumentedExecutor newBoundedExecutor(String name, int threads, int queueCapacity,
+                                                          RejectionPolicy policy, boolean daemon) {
+        long blockMillis = Long.getLong("executor." + name + ".blockMillis", 1000L);
+        return register(new InstrumentedExecutor(name, threads, queueCapacity, policy, blockMillis, daemon));
+    }
+
+    private static ExecutorService newExecutor(String name, int threads, boolean daemon) {
+        if ("jdk".equalsIgnoreCase(System.getProperty("executor.factory.mode", "bounded"))) {
+            ThreadFactory threadFactory = task -> {
+                Thread thread = Executors.defaultThreadFactory().newThread(task);
+                thread.setDaemon(daemon);
+                return thread;
+            };
+            return Executors.newFixedThreadPool(threads, threadFactory);
+        }
+        return newBoundedExecutor(name,
+                Integer.getInteger("executor." + name + ".threads", threads),
+                Integer.getInteger("executor." + name + ".queue", Integer.getInteger("executor.default.queue", 1000)),
+                RejectionPolicy.valueOf(System.getProperty("executor." + name + ".policy",
+                        System.getProperty("executor.default.policy", RejectionPolicy.BLOCK.name())).toUpperCase()),
+                daemon);
+    }
+
+    // Shared pool running tasks by priority or deadline tag instead of FIFO, see PriorityExecutor
+    public static PriorityExecutor newPriorityExecutor(String name, int threads) {
+        return register(new PriorityExecutor(name, Integer.getInteger("executor." + name + ".threads", threads),
+                Duration.ofMillis(Long.getLong("executor." + name + ".agingMillis", 250L)), true));
+    }
+
+    // Executors built elsewhere (e.g. subclasses) can still be reported through metrics().
+    // Dropped again once the executor terminates, see unregister
+    public static <E extends InstrumentedExecutor> E register(E executor) {
+        EXECUTORS.put(executor.getName(), executor);
+        // terminated() may already have run before the put
+        if (executor.isTerminated()) {
+            unregister(executor);
+        }
+        return executor;
+    }
+
+    // Called from InstrumentedExecutor.terminated(), leaves a newer executor of the same name in place
+    static void unregister(InstrumentedExecutor executor) {
+        EXECUTORS.remove(executor.getName(), executor);
+    }
+
+    public static List<ExecutorMetrics> metrics() {
+        List<ExecutorMetrics> metrics = new ArrayList<>();
+        EXECUTORS.values().forEach(executor -> metrics.add(executor.metrics()));
+        return metrics;
+    }
+
+    // Through the caller's sink (e.g. AsyncLogSink::log), so metric lines do not interleave with its output
+    public static void printMetrics(Consumer<Object> out) {
+        metrics().forEach(out);
+    }
+}
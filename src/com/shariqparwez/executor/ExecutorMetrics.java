@@ -0,0 +1,79 @@
+package com.shariqparwez.executor;
+
+import java.util.concurrent.TimeUnit;
+
+// Point in time view of an InstrumentedExecutor
+public class ExecutorMetrics {
+    private final String name;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final int activeThreads;
+    private final int poolSize;
+    private final long completedTasks;
+    private final long rejectedTasks;
+    private final LatencyHistogram waitTime;
+    private final LatencyHistogram runTime;
+
+    public ExecutorMetrics(String name, int queueDepth, int queueCapacity, int activeThreads, int poolSize,
+                           long completedTasks, long rejectedTasks, LatencyHistogram waitTime,
+                           LatencyHistogram runTime) {
+        this.name = name;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.activeThreads = activeThreads;
+        this.poolSize = poolSize;
+        this.completedTasks = completedTasks;
+        this.rejectedTasks = rejectedTasks;
+        this.waitTime = waitTime;
+        this.runTime = runTime;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getActiveThreads() {
+        return activeThreads;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public long getCompletedTasks() {
+        return completedTasks;
+    }
+
+    public long getRejectedTasks() {
+        return rejectedTasks;
+    }
+
+    // Live histogram, keeps updating after the snapshot is taken
+    public LatencyHistogram getWaitTime() {
+        return waitTime;
+    }
+
+    // Live histogram, keeps updating after the snapshot is taken
+    public LatencyHistogram getRunTime() {
+        return runTime;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutorMetrics [name=" + name
+                + ", queue=" + queueDepth + "/" + queueCapacity
+                + ", active=" + activeThreads + "/" + poolSize
+                + ", completed=" + completedTasks
+                + ", rejected=" + rejectedTasks
+                + ", waitP99=" + waitTime.getPercentile(99, TimeUnit.MICROSECONDS) + "us"
+                + ", runP99=" + runTime.getPercentile(99, TimeUnit.MICROSECONDS) + "us]";
+    }
+}
@@ -0,0 +1,149 @@
+package com.shariqparwez.executor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Fixed size thread pool with a bounded queue, which records how long tasks wait
+// in the queue and how long they run
+public class InstrumentedExecutor extends ThreadPoolExecutor {
+    private final String name;
+    private final RejectionPolicy policy;
+    private final int queueCapacity;
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public InstrumentedExecutor(String name, int threads, int queueCapacity, RejectionPolicy policy,
+                                long blockTimeoutMillis) {
+        this(name, threads, queueCapacity, policy, blockTimeoutMillis, false);
+    }
+
+    public InstrumentedExecutor(String name, int threads, int queueCapacity, RejectionPolicy policy,
+                                long blockTimeoutMillis, boolean daemon) {
+        this(name, threads, new ArrayBlockingQueue<>(queueCapacity), queueCapacity, policy, blockTimeoutMillis,
+                daemon);
+    }
+
+    protected InstrumentedExecutor(String name, int threads, BlockingQueue<Runnable> queue, int queueCapacity,
+                                   RejectionPolicy policy, long blockTimeoutMillis, boolean daemon) {
+        super(threads, threads, 60L, TimeUnit.SECONDS, queue, namedThreads(name, daemon));
+        this.name = name;
+        this.policy = policy;
+        this.queueCapacity = queueCapacity;
+        setRejectedExecutionHandler(rejectionHandler(policy, blockTimeoutMillis));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(wrap(command));
+    }
+
+    // Hook for subclasses which need to tag tasks before they are queued
+    protected TimedTask wrap(Runnable command) {
+        return command instanceof TimedTask ? (TimedTask) command : new TimedTask(command);
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        if (task instanceof TimedTask) {
+            TimedTask timed = (TimedTask) task;
+            timed.startedAt = System.nanoTime();
+            waitTime.record(timed.startedAt - timed.queuedAt);
+        }
+        super.beforeExecute(thread, task);
+    }
+
+    @Override
+    protected void afterExecute(Runnable task, Throwable throwable) {
+        super.afterExecute(task, throwable);
+        if (task instanceof TimedTask) {
+            runTime.record(System.nanoTime() - ((TimedTask) task).startedAt);
+        }
+    }
+
+    @Override
+    protected void terminated() {
+        super.terminated();
+        // A shut down executor is not reported any more, and not kept reachable by the registry
+        ExecutorFactory.unregister(this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public RejectionPolicy getPolicy() {
+        return policy;
+    }
+
+    public ExecutorMetrics metrics() {
+        return new ExecutorMetrics(name, getQueue().size(), queueCapacity, getActiveCount(), getPoolSize(),
+                getCompletedTaskCount(), rejected.get(), waitTime, runTime);
+    }
+
+    private RejectedExecutionHandler rejectionHandler(RejectionPolicy policy, long blockTimeoutMillis) {
+        switch (policy) {
+            case CALLER_RUNS:
+                return (task, executor) -> {
+                    rejected.incrementAndGet();
+                    if (!executor.isShutdown()) {
+                        task.run();
+                    }
+                };
+            case DISCARD:
+                return (task, executor) -> rejected.incrementAndGet();
+            case BLOCK:
+                return (task, executor) -> {
+                    try {
+                        if (executor.isShutdown()
+                                || !executor.getQueue().offer(task, blockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                            rejected.incrementAndGet();
+                            throw new RejectedExecutionException("Executor " + name + " queue full");
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        rejected.incrementAndGet();
+                        throw new RejectedExecutionException("Interrupted while waiting for " + name, e);
+                    }
+                };
+            case ABORT:
+            default:
+                return (task, executor) -> {
+                    rejected.incrementAndGet();
+                    throw new RejectedExecutionException("Executor " + name + " queue full");
+                };
+        }
+    }
+
+    private static ThreadFactory namedThreads(String name, boolean daemon) {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        };
+    }
+
+    // Runnable carrying the time it was handed to the executor
+    protected static class TimedTask implements Runnable {
+        final Runnable delegate;
+        final long queuedAt = System.nanoTime();
+        long startedAt;
+
+        protected TimedTask(Runnable delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void run() {
+            delegate.run();
+        }
+    }
+}
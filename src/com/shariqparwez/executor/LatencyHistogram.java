@@ -0,0 +1,103 @@
+package com.shariqparwez.executor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Lock-free log-linear histogram of nanosecond values.
+// Each power of two is split into 8 sub-buckets, so recorded values are kept within ~12.5%.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax(TimeUnit unit) {
+        return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public double getSum(TimeUnit unit) {
+        return (double) sum.get() / unit.toNanos(1);
+    }
+
+    public double getMean(TimeUnit unit) {
+        long total = count.get();
+        return total == 0 ? 0 : (double) sum.get() / total / unit.toNanos(1);
+    }
+
+    // Upper bound of the bucket holding the given percentile (0 - 100)
+    public long getPercentile(double percentile, TimeUnit unit) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return unit.convert(Math.min(upperBoundOf(i), max.get()), TimeUnit.NANOSECONDS);
+            }
+        }
+        return getMax(unit);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount()
+                + " mean=" + String.format("%.1f", getMean(TimeUnit.MICROSECONDS)) + "us"
+                + " p50=" + getPercentile(50, TimeUnit.MICROSECONDS) + "us"
+                + " p99=" + getPercentile(99, TimeUnit.MICROSECONDS) + "us"
+                + " max=" + getMax(TimeUnit.MICROSECONDS) + "us";
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (msb - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int msb = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        long lower = (1L << msb) + (sub << (msb - SUB_BUCKET_BITS));
+        return lower + (1L << (msb - SUB_BUCKET_BITS)) - 1;
+    }
+}
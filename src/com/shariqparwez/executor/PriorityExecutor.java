@@ -0,0 +1,79 @@
+package com.shariqparwez.executor;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// InstrumentedExecutor whose queue is ordered by due time instead of arrival (earliest deadline first).
+//
+// A task tagged with a deadline is due at that deadline. A task tagged with a priority is due 'level'
+// aging periods after it was queued, so HIGH tasks are due at once and LOW ones four periods later: a
+// waiting task keeps its due time while newer ones get later ones, which is the aging that keeps low
+// priority work from starving. Untagged tasks (e.g. passed to execute directly) are NORMAL. Equal due times
+// run in arrival order. Tag tasks with the executors returned by withPriority and withDeadline, e.g.
+// supplyAsync(supplier, executor.withPriority(TaskPriority.HIGH)).
+//
+// The queue is unbounded, so the rejection policy only applies once the executor is shut down.
+public class PriorityExecutor extends InstrumentedExecutor {
+    private final long agingNanos;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public PriorityExecutor(String name, int threads, Duration aging, boolean daemon) {
+        super(name, threads, new PriorityBlockingQueue<>(64, PriorityExecutor::compare), Integer.MAX_VALUE,
+                RejectionPolicy.ABORT, 0, daemon);
+        this.agingNanos = aging.toNanos();
+    }
+
+    public Executor withPriority(TaskPriority priority) {
+        return command -> execute(tag(command, System.nanoTime() + priority.getLevel() * agingNanos));
+    }
+
+    // Deadline as a System.nanoTime value, shared by all the stages of a pipeline
+    public Executor withDeadline(long deadlineNanos) {
+        return command -> execute(tag(command, deadlineNanos));
+    }
+
+    public Executor withDeadline(Duration fromNow) {
+        return withDeadline(System.nanoTime() + fromNow.toNanos());
+    }
+
+    public Duration getAging() {
+        return Duration.ofNanos(agingNanos);
+    }
+
+    @Override
+    protected TimedTask wrap(Runnable command) {
+        if (command instanceof PriorityTask) {
+            return (PriorityTask) command;
+        }
+        return tag(command, System.nanoTime() + TaskPriority.NORMAL.getLevel() * agingNanos);
+    }
+
+    private PriorityTask tag(Runnable command, long dueAt) {
+        return new PriorityTask(command, dueAt, sequence.incrementAndGet());
+    }
+
+    private static int compare(Runnable left, Runnable right) {
+        PriorityTask first = (PriorityTask) left;
+        PriorityTask second = (PriorityTask) right;
+        // Subtraction keeps the order right across System.nanoTime overflow
+        long byDue = first.dueAt - second.dueAt;
+        if (byDue != 0) {
+            return byDue < 0 ? -1 : 1;
+        }
+        return Long.compare(first.sequence, second.sequence);
+    }
+
+    // Task carrying the time by which it should run
+    private static class PriorityTask extends TimedTask {
+        final long dueAt;
+        final long sequence;
+
+        PriorityTask(Runnable delegate, long dueAt, long sequence) {
+            super(delegate);
+            this.dueAt = dueAt;
+            this.sequence = sequence;
+        }
+    }
+}
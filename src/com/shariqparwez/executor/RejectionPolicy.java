@@ -0,0 +1,13 @@
+package com.shariqparwez.executor;
+
+// What a bounded executor does once its queue is full
+public enum RejectionPolicy {
+    // Throw RejectedExecutionException back to the submitter
+    ABORT,
+    // Run the task in the submitting thread, which slows the producer down
+    CALLER_RUNS,
+    // Silently drop the task (counted as rejected)
+    DISCARD,
+    // Block the submitter until queue space frees up (or the block timeout elapses)
+    BLOCK
+}
@@ -0,0 +1,19 @@
+package com.shariqparwez.executor;
+
+// Priority tag of a task queued on a PriorityExecutor. A task waiting 'level' aging periods longer than
+// another one runs first whatever their priorities, so low priority work is delayed but never starved
+public enum TaskPriority {
+    HIGH(0),
+    NORMAL(1),
+    LOW(4);
+
+    private final int level;
+
+    TaskPriority(int level) {
+        this.level = level;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+}
@@ -0,0 +1,59 @@
+package com.shariqparwez.flow;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+// Last stage of a flow: hands every item to a consumer, asking for 'batch' items at a time,
+// and completes its future with the number of items once upstream completes
+public class ConsumingSubscriber<T> implements Flow.Subscriber<T> {
+    private final Consumer<T> consumer;
+    private final int batch;
+    private final CompletableFuture<Long> completion = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+    private long consumed;
+    private int pending;
+
+    public ConsumingSubscriber(Consumer<T> consumer, int batch) {
+        this.consumer = consumer;
+        this.batch = batch;
+    }
+
+    public CompletableFuture<Long> completion() {
+        return completion;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        pending = batch;
+        subscription.request(batch);
+    }
+
+    @Override
+    public void onNext(T item) {
+        try {
+            consumer.accept(item);
+        } catch (Throwable e) {
+            subscription.cancel();
+            completion.completeExceptionally(e);
+            return;
+        }
+        consumed++;
+        // Ask for the next batch once half of the current one is consumed
+        if (--pending <= batch / 2) {
+            subscription.request(batch - pending);
+            pending = batch;
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        completion.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        completion.complete(consumed);
+    }
+}
@@ -0,0 +1,77 @@
+package com.shariqparwez.flow;
+
+import com.shariqparwez.model.IdBatch;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Streaming alternative to the supplyIDs -> fetchUsers -> displayer chain, built on java.util.concurrent.Flow.
+//
+// Items (typically IdBatch chunks) are produced lazily and pushed through MappingProcessor stages into a
+// consumer. Every hop has a buffer of 'bufferCapacity' items and is demand driven, so at most a few buffers
+// of chunks are alive at once whatever the total number of ids, and a slow consumer slows the producer.
+// No stage blocks a thread while waiting for demand, so any executor works, a single thread included.
+//   FlowPipeline.ids(0, 10_000_000, 1_024, executor, 16).map(IdBatch::toUsers).consume(displayer)
+public class FlowPipeline<T> {
+    private final Runnable producer;
+    private final Flow.Publisher<T> last;
+    private final Executor executor;
+    private final int bufferCapacity;
+
+    private FlowPipeline(Runnable producer, Flow.Publisher<T> last, Executor executor, int bufferCapacity) {
+        this.producer = producer;
+        this.last = last;
+        this.executor = executor;
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    // Items are pulled from the iterator only as fast as the pipeline accepts them
+    public static <T> FlowPipeline<T> from(Iterator<T> items, Executor executor, int bufferCapacity) {
+        IteratorPublisher<T> source = new IteratorPublisher<>(items, executor);
+        return new FlowPipeline<>(source::start, source, executor, bufferCapacity);
+    }
+
+    // Ids [fromInclusive, toExclusive) in chunks of 'chunkSize', each chunk created only when needed
+    public static FlowPipeline<IdBatch> ids(long fromInclusive, long toExclusive, int chunkSize, Executor executor,
+                                            int bufferCapacity) {
+        Iterator<IdBatch> chunks = new Iterator<IdBatch>() {
+            private long next = fromInclusive;
+
+            @Override
+            public boolean hasNext() {
+                return next < toExclusive;
+            }
+
+            @Override
+            public IdBatch next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long end = Math.min(toExclusive, next + chunkSize);
+                IdBatch chunk = IdBatch.range(next, end);
+                next = end;
+                return chunk;
+            }
+        };
+        return from(chunks, executor, bufferCapacity);
+    }
+
+    public <R> FlowPipeline<R> map(Function<T, R> function) {
+        MappingProcessor<T, R> stage = new MappingProcessor<>(function, executor, bufferCapacity);
+        last.subscribe(stage);
+        return new FlowPipeline<>(producer, stage, executor, bufferCapacity);
+    }
+
+    // Starts the producer; the future completes with the number of items consumed, or with the first failure
+    public CompletableFuture<Long> consume(Consumer<T> consumer) {
+        ConsumingSubscriber<T> subscriber = new ConsumingSubscriber<>(consumer, bufferCapacity);
+        last.subscribe(subscriber);
+        producer.run();
+        return subscriber.completion();
+    }
+}
@@ -0,0 +1,94 @@
+package com.shariqparwez.flow;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Source of a flow pulling items from an iterator for a single subscriber, from start() on.
+// Items are pulled by a drain task on the executor and only as many as the subscriber asked for, so the
+// source never waits for buffer space and a single thread is enough to run a whole pipeline
+class IteratorPublisher<T> implements Flow.Publisher<T> {
+    private final Iterator<T> items;
+    private final Executor executor;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger pendingDrains = new AtomicInteger();
+
+    private volatile Flow.Subscriber<? super T> subscriber;
+    private volatile boolean started;
+    private volatile boolean cancelled;
+    // Only touched by the drain task
+    private boolean terminated;
+
+    IteratorPublisher(Iterator<T> items, Executor executor) {
+        this.items = items;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (this.subscriber != null) {
+            throw new IllegalStateException("IteratorPublisher supports a single subscriber");
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                demand.accumulateAndGet(Math.max(0, n),
+                        (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+            }
+        });
+        this.subscriber = subscriber;
+        drain();
+    }
+
+    void start() {
+        started = true;
+        drain();
+    }
+
+    private void drain() {
+        if (pendingDrains.getAndIncrement() != 0) {
+            return;
+        }
+        try {
+            executor.execute(this::drainLoop);
+        } catch (RejectedExecutionException e) {
+            cancelled = true;
+            if (subscriber != null) {
+                subscriber.onError(e);
+            }
+        }
+    }
+
+    private void drainLoop() {
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super T> target = subscriber;
+            if (started && target != null && !terminated) {
+                try {
+                    while (!cancelled && demand.get() > 0 && items.hasNext()) {
+                        T item = items.next();
+                        demand.decrementAndGet();
+                        target.onNext(item);
+                    }
+                    if (!cancelled && !items.hasNext()) {
+                        terminated = true;
+                        target.onComplete();
+                    }
+                } catch (Throwable e) {
+                    terminated = true;
+                    target.onError(e);
+                }
+            }
+            missed = pendingDrains.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
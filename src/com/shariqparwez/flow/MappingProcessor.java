@@ -0,0 +1,174 @@
+package com.shariqparwez.flow;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Flow stage applying a function to every item, for a single subscriber.
+//
+// It asks upstream for 'bufferCapacity' items up front and for one more each time a result is handed
+// downstream, so at most 'bufferCapacity' results wait here. Results are handed on by a drain task on the
+// executor, only as far as downstream asked for them. No thread ever blocks for buffer space, so the stage
+// works on an executor of any size, down to a single thread.
+public class MappingProcessor<T, R> implements Flow.Processor<T, R> {
+    private final Function<T, R> function;
+    private final Executor executor;
+    private final int bufferCapacity;
+    private final Queue<R> results = new ConcurrentLinkedQueue<>();
+    private final AtomicLong demand = new AtomicLong();
+    // Drain requests not yet handled, a drain task runs only while it is above zero
+    private final AtomicInteger pendingDrains = new AtomicInteger();
+
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super R> downstream;
+    private volatile boolean done;
+    private volatile Throwable failure;
+    private volatile boolean cancelled;
+    // Only touched by the drain task
+    private boolean terminated;
+
+    public MappingProcessor(Function<T, R> function, Executor executor, int bufferCapacity) {
+        this.function = function;
+        this.executor = executor;
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super R> subscriber) {
+        if (downstream != null) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("MappingProcessor supports a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("Non-positive request " + n));
+                    return;
+                }
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                if (upstream != null) {
+                    upstream.cancel();
+                }
+                results.clear();
+            }
+        });
+        // Set once onSubscribe returned, so the drain task never signals before it
+        downstream = subscriber;
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        upstream = subscription;
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        subscription.request(bufferCapacity);
+    }
+
+    @Override
+    public void onNext(T item) {
+        if (cancelled || done) {
+            return;
+        }
+        R result;
+        try {
+            result = function.apply(item);
+            if (result == null) {
+                throw new NullPointerException("Mapping function returned null");
+            }
+        } catch (Throwable e) {
+            fail(e);
+            return;
+        }
+        results.offer(result);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        failure = throwable;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    private void fail(Throwable e) {
+        if (upstream != null) {
+            upstream.cancel();
+        }
+        onError(e);
+    }
+
+    private void drain() {
+        if (pendingDrains.getAndIncrement() != 0) {
+            return;
+        }
+        try {
+            executor.execute(this::drainLoop);
+        } catch (RejectedExecutionException e) {
+            cancelled = true;
+            if (upstream != null) {
+                upstream.cancel();
+            }
+            Flow.Subscriber<? super R> subscriber = downstream;
+            if (subscriber != null) {
+                subscriber.onError(e);
+            }
+        }
+    }
+
+    private void drainLoop() {
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super R> subscriber = downstream;
+            if (subscriber != null && !cancelled && !terminated) {
+                while (demand.get() > 0) {
+                    R result = results.poll();
+                    if (result == null) {
+                        break;
+                    }
+                    demand.decrementAndGet();
+                    subscriber.onNext(result);
+                    upstream.request(1);
+                }
+                if (done && results.isEmpty()) {
+                    terminated = true;
+                    if (failure != null) {
+                        subscriber.onError(failure);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                }
+            }
+            missed = pendingDrains.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
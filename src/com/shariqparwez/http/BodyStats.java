@@ -0,0 +1,39 @@
+package com.shariqparwez.http;
+
+// Summary of a response body computed while streaming it, without keeping the body around
+public class BodyStats {
+    private final long length;
+    private final long lines;
+    private final long jsonObjects;
+    private final String sha256;
+
+    public BodyStats(long length, long lines, long jsonObjects, String sha256) {
+        this.length = length;
+        this.lines = lines;
+        this.jsonObjects = jsonObjects;
+        this.sha256 = sha256;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    // Number of top level JSON objects seen, e.g. the elements of an array or NDJSON records
+    public long getJsonObjects() {
+        return jsonObjects;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    @Override
+    public String toString() {
+        return "BodyStats [length=" + length + ", lines=" + lines + ", jsonObjects=" + jsonObjects
+                + ", sha256=" + sha256 + "]";
+    }
+}
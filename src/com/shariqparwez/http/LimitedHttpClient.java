@@ -0,0 +1,34 @@
+package com.shariqparwez.http;
+
+import com.shariqparwez.resilience.AdaptiveLimiter;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+
+// Decorator around HttpClient.sendAsync which keeps the number of in-flight requests under an AdaptiveLimiter.
+// Failures and 429 / 503 responses count as overload and shrink the limit.
+public class LimitedHttpClient {
+    private final HttpClient client;
+    private final AdaptiveLimiter limiter;
+
+    public LimitedHttpClient(HttpClient client, AdaptiveLimiter limiter) {
+        this.client = client;
+        this.limiter = limiter;
+    }
+
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        return limiter.call(() -> client.sendAsync(request, handler),
+                response -> response.statusCode() == 429 || response.statusCode() == 503);
+    }
+
+    public AdaptiveLimiter limiter() {
+        return limiter;
+    }
+
+    @Override
+    public String toString() {
+        return "LimitedHttpClient [" + limiter + "]";
+    }
+}
@@ -0,0 +1,34 @@
+package com.shariqparwez.http;
+
+import com.shariqparwez.resilience.KeyedRateLimiter;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+
+// Decorator around HttpClient.sendAsync which holds each request until its host's token bucket has a permit,
+// so upstream sees at most the configured rate per host instead of answering with 429. Hosts are keyed the
+// way SharedHttpClient keys them, scheme://host:port with the default port filled in
+public class RateLimitedHttpClient {
+    private final HttpClient client;
+    private final KeyedRateLimiter<String> limiter;
+
+    public RateLimitedHttpClient(HttpClient client, KeyedRateLimiter<String> limiter) {
+        this.client = client;
+        this.limiter = limiter;
+    }
+
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        return limiter.call(SharedHttpClient.hostOf(request.uri()), () -> client.sendAsync(request, handler));
+    }
+
+    public KeyedRateLimiter<String> limiter() {
+        return limiter;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitedHttpClient [" + limiter + "]";
+    }
+}
@@ -0,0 +1,216 @@
+package com.shariqparwez.http;
+
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.executor.LatencyHistogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Long lived HttpClient wrapper, meant to be built once and shared so connections are
+// pooled (HTTP/1.1) or multiplexed (HTTP/2) across calls.
+// Caps the number of in-flight requests per host; extra requests wait in a per-host queue.
+public class SharedHttpClient {
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final int maxInFlightPerHost;
+    private final Map<String, HostPermits> hosts = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong http2Responses = new AtomicLong();
+    private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+    private final LatencyHistogram responseTime = new LatencyHistogram();
+
+    public SharedHttpClient(HttpClient.Version version, Duration connectTimeout, Duration requestTimeout,
+                            int maxInFlightPerHost, Executor executor) {
+        this.client = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+        this.requestTimeout = requestTimeout;
+        this.maxInFlightPerHost = maxInFlightPerHost;
+    }
+
+    // Process wide instance, configured through system properties:
+    //   http.client.version           HTTP_2 (default) or HTTP_1_1
+    //   http.client.connectTimeoutMs  default 2000
+    //   http.client.requestTimeoutMs  default 10000
+    //   http.client.maxPerHost        default 64
+    //   http.client.threads           size of the bounded executor, default 4
+    public static SharedHttpClient shared() {
+        return Holder.INSTANCE;
+    }
+
+    public HttpClient client() {
+        return client;
+    }
+
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        return sendAsync(request, handler).join();
+    }
+
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        HostPermits permits = hosts.computeIfAbsent(hostOf(request.uri()), host -> new HostPermits());
+
+        permits.acquire(() -> {
+            long start = System.nanoTime();
+            requests.incrementAndGet();
+
+            // Headers arriving is the first byte of the response
+            HttpResponse.BodyHandler<T> timedHandler = responseInfo -> {
+                timeToFirstByte.record(System.nanoTime() - start);
+                return handler.apply(responseInfo);
+            };
+
+            CompletableFuture<HttpResponse<T>> response;
+            try {
+                response = client.sendAsync(withTimeout(request), timedHandler);
+            } catch (RuntimeException e) {
+                // Thrown before the request went out, e.g. by a shut down executor: give the permit back
+                // here, or the host loses it for good and a queued request's failure surfaces in our caller
+                permits.release();
+                failures.incrementAndGet();
+                result.completeExceptionally(e);
+                return;
+            }
+            response.whenComplete((r, e) -> {
+                permits.release();
+                responseTime.record(System.nanoTime() - start);
+                if (e != null) {
+                    failures.incrementAndGet();
+                    result.completeExceptionally(e);
+                } else {
+                    if (r.version() == HttpClient.Version.HTTP_2) {
+                        http2Responses.incrementAndGet();
+                    }
+                    result.complete(r);
+                }
+            });
+        });
+        return result;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getHttp2ResponseCount() {
+        return http2Responses.get();
+    }
+
+    public int getInFlight() {
+        return hosts.values().stream().mapToInt(HostPermits::inFlight).sum();
+    }
+
+    public int getQueued() {
+        return hosts.values().stream().mapToInt(HostPermits::queued).sum();
+    }
+
+    public LatencyHistogram getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+
+    public LatencyHistogram getResponseTime() {
+        return responseTime;
+    }
+
+    @Override
+    public String toString() {
+        return "SharedHttpClient [requests=" + requests.get()
+                + ", failures=" + failures.get()
+                + ", http2=" + http2Responses.get()
+                + ", inFlight=" + getInFlight()
+                + ", queued=" + getQueued()
+                + ", ttfbP50=" + timeToFirstByte.getPercentile(50, TimeUnit.MICROSECONDS) + "us"
+                + ", ttfbP99=" + timeToFirstByte.getPercentile(99, TimeUnit.MICROSECONDS) + "us]";
+    }
+
+    private HttpRequest withTimeout(HttpRequest request) {
+        if (request.timeout().isPresent()) {
+            return request;
+        }
+        return HttpRequest.newBuilder(request, (name, value) -> true).timeout(requestTimeout).build();
+    }
+
+    // Origin of the request as scheme://host:port, so http://host and http://host:80 share one key. Hosts
+    // URI cannot parse (getHost() is null, e.g. with an underscore) are keyed by their raw authority.
+    // Also the per-host key of RateLimitedHttpClient
+    static String hostOf(URI uri) {
+        String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase();
+        String host = uri.getHost();
+        if (host == null) {
+            return scheme + "://" + uri.getRawAuthority();
+        }
+        int port = uri.getPort();
+        if (port == -1) {
+            port = "https".equals(scheme) ? 443 : 80;
+        }
+        return scheme + "://" + host.toLowerCase() + ":" + port;
+    }
+
+    // Per-host in-flight counter with a FIFO of requests waiting for a permit
+    private class HostPermits {
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int inFlight;
+
+        void acquire(Runnable task) {
+            synchronized (this) {
+                if (inFlight >= maxInFlightPerHost) {
+                    waiting.add(task);
+                    return;
+                }
+                inFlight++;
+            }
+            task.run();
+        }
+
+        void release() {
+            Runnable next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    inFlight--;
+                }
+            }
+            // Hand the permit straight to the next waiting request
+            if (next != null) {
+                next.run();
+            }
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        synchronized int queued() {
+            return waiting.size();
+        }
+    }
+
+    private static class Holder {
+        private static final SharedHttpClient INSTANCE = new SharedHttpClient(
+                HttpClient.Version.valueOf(System.getProperty("http.client.version", "HTTP_2")),
+                Duration.ofMillis(Long.getLong("http.client.connectTimeoutMs", 2_000L)),
+                Duration.ofMillis(Long.getLong("http.client.requestTimeoutMs", 10_000L)),
+                Integer.getInteger("http.client.maxPerHost", 64),
+                ExecutorFactory.newSharedExecutor("http-client", Integer.getInteger("http.client.threads", 4)));
+    }
+}
@@ -0,0 +1,149 @@
+package com.shariqparwez.http;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Decorator around HttpClient.sendAsync collapsing concurrent identical requests into one.
+//
+// GET and HEAD requests with the same method, URI and values of the 'keyHeaders' share a single upstream
+// call, and so the same response and parsed body (so the body type must be safe to share). With a TTL above
+// zero a successful (2xx) response is also kept for that long and served to later identical requests. Other
+// methods are never collapsed. Failures are shared with the callers already waiting but never kept.
+public class SingleFlightHttpClient<T> {
+    private final HttpClient client;
+    private final HttpResponse.BodyHandler<T> handler;
+    private final List<String> keyHeaders;
+    private final long ttlNanos;
+    private final Map<String, Flight<T>> flights = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong upstream = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    public SingleFlightHttpClient(HttpClient client, HttpResponse.BodyHandler<T> handler, List<String> keyHeaders,
+                                  Duration ttl) {
+        this.client = client;
+        this.handler = handler;
+        this.keyHeaders = keyHeaders;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    // Collapses in-flight requests only, nothing is kept once answered
+    public SingleFlightHttpClient(HttpClient client, HttpResponse.BodyHandler<T> handler) {
+        this(client, handler, Collections.emptyList(), Duration.ZERO);
+    }
+
+    public CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request) {
+        requests.incrementAndGet();
+        if (!"GET".equals(request.method()) && !"HEAD".equals(request.method())) {
+            upstream.incrementAndGet();
+            return client.sendAsync(request, handler);
+        }
+
+        String key = keyOf(request);
+        long now = System.nanoTime();
+        Flight<T> created = new Flight<>();
+        Flight<T> flight = flights.compute(key,
+                (k, existing) -> existing != null && existing.isUsable(now) ? existing : created);
+
+        if (flight != created) {
+            if (flight.response.isDone()) {
+                cacheHits.incrementAndGet();
+            } else {
+                collapsed.incrementAndGet();
+            }
+            // Each caller gets its own future, so one cancelling does not affect the others
+            return flight.response.copy();
+        }
+
+        upstream.incrementAndGet();
+        CompletableFuture<HttpResponse<T>> call;
+        try {
+            call = client.sendAsync(request, handler);
+        } catch (RuntimeException e) {
+            // Nothing went out, fail the callers already waiting and let the next request try again
+            flights.remove(key, flight);
+            flight.response.completeExceptionally(e);
+            return flight.response.copy();
+        }
+        call.whenComplete((response, e) -> {
+            boolean keep = e == null && ttlNanos > 0 && response.statusCode() / 100 == 2;
+            if (keep) {
+                flight.expiresAt = System.nanoTime() + ttlNanos;
+                // Drop the entry on the delayer thread once it expires, even if the key is never asked again
+                CompletableFuture.delayedExecutor(ttlNanos, TimeUnit.NANOSECONDS, Runnable::run)
+                        .execute(() -> flights.remove(key, flight));
+            } else {
+                flights.remove(key, flight);
+            }
+            if (e != null) {
+                flight.response.completeExceptionally(e);
+            } else {
+                flight.response.complete(response);
+            }
+        });
+        return flight.response.copy();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getUpstreamCount() {
+        return upstream.get();
+    }
+
+    // Requests which joined a call already in flight
+    public long getCollapsedCount() {
+        return collapsed.get();
+    }
+
+    // Requests answered from a kept response (TTL above zero only)
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    // Share of requests which did not reach upstream
+    public double getCollapseRatio() {
+        long total = requests.get();
+        return total == 0 ? 0 : 1 - (double) upstream.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlightHttpClient [requests=" + requests.get() + ", upstream=" + upstream.get()
+                + ", collapsed=" + collapsed.get() + ", cacheHits=" + cacheHits.get()
+                + ", collapseRatio=" + String.format("%.3f", getCollapseRatio()) + "]";
+    }
+
+    private String keyOf(HttpRequest request) {
+        StringBuilder key = new StringBuilder(request.method()).append(' ').append(request.uri());
+        for (String header : keyHeaders) {
+            key.append('\n').append(header.toLowerCase()).append('=').append(request.headers().allValues(header));
+        }
+        return key.toString();
+    }
+
+    private static class Flight<T> {
+        final CompletableFuture<HttpResponse<T>> response = new CompletableFuture<>();
+        volatile long expiresAt;
+
+        // Still in flight, or answered and not yet expired
+        boolean isUsable(long now) {
+            if (!response.isDone()) {
+                return true;
+            }
+            return !response.isCompletedExceptionally() && expiresAt - now > 0;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.shariqparwez.http;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+// BodySubscriber which looks at each ByteBuffer as it arrives (length, SHA-256, line count and a
+// light JSON object scan) and then lets it go, so the full body is never held on the heap.
+// Buffers are requested one batch at a time, so a slow consumer pushes back on the connection.
+public class StreamingBodySubscriber implements HttpResponse.BodySubscriber<BodyStats> {
+    private final CompletableFuture<BodyStats> result = new CompletableFuture<>();
+    private final MessageDigest digest;
+    private final byte[] chunk = new byte[8 * 1024];
+    private Flow.Subscription subscription;
+
+    private long length;
+    private long lines;
+    private long jsonObjects;
+    private int jsonDepth;
+    private boolean topLevelArray;
+    private boolean inString;
+    private boolean escaped;
+
+    public StreamingBodySubscriber() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // BodyHandler to pass to HttpClient.send/sendAsync in place of BodyHandlers.ofString()
+    public static HttpResponse.BodyHandler<BodyStats> handler() {
+        return responseInfo -> new StreamingBodySubscriber();
+    }
+
+    @Override
+    public CompletionStage<BodyStats> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                // Copy through a small reused array, never the whole body
+                int size = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, size);
+                digest.update(chunk, 0, size);
+                scan(size);
+                length += size;
+            }
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        result.complete(new BodyStats(length, lines, jsonObjects, hex.toString()));
+    }
+
+    private void scan(int size) {
+        for (int i = 0; i < size; i++) {
+            byte b = chunk[i];
+            if (b == '\n') {
+                lines++;
+            }
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                if (jsonDepth == 0) {
+                    topLevelArray = b == '[';
+                }
+                jsonDepth++;
+            } else if (b == '}' || b == ']') {
+                jsonDepth--;
+                // Object closed either at the top level or directly inside a top level array
+                if (b == '}' && (jsonDepth == 0 || (jsonDepth == 1 && topLevelArray))) {
+                    jsonObjects++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.shariqparwez.http;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Local HTTP/1.1 server for running the HTTP examples and benchmarks offline.
+// Answers every GET with a fixed size body after an optional delay, and counts requests
+// and distinct client connections (by remote address) so connection reuse can be measured.
+public class StubHttpServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+    private final Set<String> connections = ConcurrentHashMap.newKeySet();
+
+    public StubHttpServer(int bodySize, long delayMillis) throws IOException {
+        this(bodySize, delayMillis, 0);
+    }
+
+    // With 'workerThreads' > 0 the server only handles that many requests at once and queues the rest,
+    // so its latency rises with load like a real backend
+    public StubHttpServer(int bodySize, long delayMillis, int workerThreads) throws IOException {
+        byte[] body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'a');
+        for (int i = 79; i < bodySize; i += 80) {
+            body[i] = '\n';
+        }
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            connections.add(exchange.getRemoteAddress().toString());
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                }
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        ThreadFactory threadFactory = task -> {
+            Thread thread = new Thread(task, "stub-http-server");
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = workerThreads > 0
+                ? Executors.newFixedThreadPool(workerThreads, threadFactory)
+                : Executors.newCachedThreadPool(threadFactory);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public void resetCounters() {
+        requests.set(0);
+        connections.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,194 @@
+package com.shariqparwez.loader;
+
+import com.shariqparwez.model.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Collects load(id) calls made within a short window (or up to a max batch size)
+// and resolves them with a single call to the backing fetchUsers function.
+// Ids already queued or in flight share the same future instead of being fetched twice.
+public class UserLoader implements AutoCloseable {
+    private final Function<List<Long>, List<User>> fetchUsers;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final Executor executor;
+    private final ScheduledExecutorService scheduler;
+
+    // Futures for every id that is either waiting in the current batch or being fetched
+    private final Map<Long, CompletableFuture<User>> inFlight = new ConcurrentHashMap<>();
+
+    // Guarded by 'this'
+    private List<Long> batch = new ArrayList<>();
+    private ScheduledFuture<?> flushTask;
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public UserLoader(Function<List<Long>, List<User>> fetchUsers, int maxBatchSize, Duration window) {
+        this(fetchUsers, maxBatchSize, window, ForkJoinPool.commonPool());
+    }
+
+    public UserLoader(Function<List<Long>, List<User>> fetchUsers, int maxBatchSize, Duration window,
+                      Executor executor) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.fetchUsers = fetchUsers;
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = window.toNanos();
+        this.executor = executor;
+
+        // Single daemon thread only used to fire the window timer, never to run fetches
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "user-loader-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        this.scheduler = timer;
+    }
+
+    public CompletableFuture<User> load(long id) {
+        loads.incrementAndGet();
+        List<Long> ready = null;
+        CompletableFuture<User> future;
+
+        synchronized (this) {
+            future = inFlight.get(id);
+            if (future != null) {
+                // Same id already queued or being fetched, share its result
+                deduplicated.incrementAndGet();
+                return future;
+            }
+            future = new CompletableFuture<>();
+            inFlight.put(id, future);
+            batch.add(id);
+
+            if (batch.size() >= maxBatchSize) {
+                ready = takeBatch();
+            } else if (flushTask == null) {
+                try {
+                    flushTask = scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // Closed: no timer would ever flush the batch, which only holds this id
+                    batch.clear();
+                    inFlight.remove(id);
+                    future.completeExceptionally(new IllegalStateException("UserLoader is closed", e));
+                    return future;
+                }
+            }
+        }
+
+        if (ready != null) {
+            dispatch(ready);
+        }
+        return future;
+    }
+
+    public CompletableFuture<List<User>> loadMany(List<Long> ids) {
+        List<CompletableFuture<User>> futures = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            futures.add(load(id));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(nil -> {
+                    List<User> users = new ArrayList<>(futures.size());
+                    futures.forEach(future -> users.add(future.join()));
+                    return users;
+                });
+    }
+
+    // Dispatch whatever is queued without waiting for the window to elapse
+    public void flush() {
+        List<Long> ready;
+        synchronized (this) {
+            ready = takeBatch();
+        }
+        if (!ready.isEmpty()) {
+            dispatch(ready);
+        }
+    }
+
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    public long getDeduplicatedCount() {
+        return deduplicated.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    private List<Long> takeBatch() {
+        List<Long> ready = batch;
+        batch = new ArrayList<>();
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        return ready;
+    }
+
+    private void dispatch(List<Long> ids) {
+        batches.incrementAndGet();
+        try {
+            executor.execute(() -> fetch(ids));
+        } catch (RejectedExecutionException e) {
+            complete(ids, new HashMap<>(), e);
+        }
+    }
+
+    private void fetch(List<Long> ids) {
+        Map<Long, User> usersById = new HashMap<>();
+        Throwable failure = null;
+        try {
+            for (User user : fetchUsers.apply(ids)) {
+                usersById.put(user.getId(), user);
+            }
+        } catch (Throwable e) {
+            failure = e;
+        }
+        complete(ids, usersById, failure);
+    }
+
+    // Complete every caller waiting on this batch and release the ids for new loads
+    private void complete(List<Long> ids, Map<Long, User> usersById, Throwable failure) {
+        for (Long id : ids) {
+            CompletableFuture<User> future = inFlight.remove(id);
+            if (future == null) {
+                continue;
+            }
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else if (usersById.containsKey(id)) {
+                future.complete(usersById.get(id));
+            } else {
+                future.completeExceptionally(new IllegalStateException("No user for id " + id));
+            }
+        }
+    }
+}
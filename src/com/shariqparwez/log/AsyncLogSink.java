@@ -0,0 +1,214 @@
+package com.shariqparwez.log;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Non-blocking replacement for System.out in displayers and exception handlers.
+//
+// Callers only claim a slot of a bounded ring buffer with one CAS and store their line in it, they never
+// take the PrintStream lock. A single writer thread drains the ring, packs the lines into one buffer and
+// writes it to stdout or a FileChannel in a single call. When the ring is full the line is dropped and
+// counted rather than making the caller wait.
+public class AsyncLogSink implements AutoCloseable {
+    private static final int BATCH_BYTES = 64 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // Set in 'tail' by close(), no slot can be claimed past it
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final WritableByteChannel channel;
+    private final boolean ownsChannel;
+    private final AtomicReferenceArray<String> ring;
+    private final int mask;
+    private final Thread writer;
+
+    // Next slot to claim (producers), with the CLOSED bit once closed, and next slot to drain (writer only)
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    // Capacity is rounded up to a power of two, the channel is closed with the sink
+    public AsyncLogSink(WritableByteChannel channel, int capacity) {
+        this(channel, capacity, true);
+    }
+
+    private AsyncLogSink(WritableByteChannel channel, int capacity, boolean ownsChannel) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.writer = new Thread(this::drain, "async-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public static AsyncLogSink toFile(Path file, int capacity) throws IOException {
+        return new AsyncLogSink(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND), capacity);
+    }
+
+    // Shared sink on stdout, flushed when the JVM exits
+    public static AsyncLogSink stdout() {
+        return Stdout.INSTANCE;
+    }
+
+    // Returns false if the line was dropped because the ring is full or the sink is closed
+    public boolean log(String line) {
+        while (true) {
+            long slot = tail.get();
+            // Checked on the same CAS as the claim, a line accepted here is always drained before close returns
+            if ((slot & CLOSED) != 0 || slot - head >= ring.length()) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (tail.compareAndSet(slot, slot + 1)) {
+                // A null slot means claimed but not yet published, so a null line is stored as "null"
+                ring.lazySet((int) slot & mask, String.valueOf(line));
+                return true;
+            }
+        }
+    }
+
+    public boolean log(Object value) {
+        return log(String.valueOf(value));
+    }
+
+    // The stack trace is rendered in the calling thread, the write happens in the writer thread
+    public boolean error(String message, Throwable e) {
+        StringWriter trace = new StringWriter();
+        e.printStackTrace(new PrintWriter(trace));
+        return log(message + System.lineSeparator() + trace.toString().stripTrailing());
+    }
+
+    // Waits until every line logged before this call has been written
+    public void flush() {
+        long target = claimed();
+        while (head < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(IDLE_PARK_NANOS / 10);
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getWrittenCount() {
+        return head;
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    @Override
+    public void close() {
+        tail.accumulateAndGet(CLOSED, (current, bit) -> current | bit);
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncLogSink [written=" + head + ", batches=" + batches.get() + ", dropped=" + dropped.get() + "]";
+    }
+
+    private void drain() {
+        StringBuilder batch = new StringBuilder();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BATCH_BYTES);
+        try {
+            while (true) {
+                boolean stopping = (tail.get() & CLOSED) != 0;
+                long next = head;
+                while (next < claimed() && batch.length() < BATCH_BYTES) {
+                    int index = (int) next & mask;
+                    String line = ring.get(index);
+                    if (line == null) {
+                        // Slot claimed but not yet published by its producer
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    ring.lazySet(index, null);
+                    batch.append(line).append(System.lineSeparator());
+                    next++;
+                }
+
+                if (batch.length() > 0) {
+                    write(batch, buffer);
+                    batch.setLength(0);
+                }
+                head = next;
+
+                if (next == claimed()) {
+                    if (stopping) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            closeChannel();
+        }
+    }
+
+    private long claimed() {
+        return tail.get() & ~CLOSED;
+    }
+
+    private void write(StringBuilder batch, ByteBuffer buffer) throws IOException {
+        byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+        for (int offset = 0; offset < bytes.length; offset += buffer.capacity()) {
+            buffer.clear();
+            buffer.put(bytes, offset, Math.min(buffer.capacity(), bytes.length - offset));
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        batches.incrementAndGet();
+    }
+
+    private void closeChannel() {
+        try {
+            if (channel instanceof FileChannel) {
+                ((FileChannel) channel).force(false);
+            }
+            if (ownsChannel) {
+                channel.close();
+            }
+        } catch (IOException e) {
+        }
+    }
+
+    private static class Stdout {
+        static final AsyncLogSink INSTANCE =
+                new AsyncLogSink(Channels.newChannel(new FileOutputStream(FileDescriptor.out)), 8192, false);
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::close, "async-log-flush"));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.shariqparwez.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Columnar batch of emails, same layout and lazy views as UserBatch
+public class EmailBatch {
+    private final long[] ids;
+
+    private EmailBatch(long[] ids) {
+        this.ids = ids;
+    }
+
+    // Shares the id column of the batch, no copy
+    public static EmailBatch of(IdBatch ids) {
+        return new EmailBatch(ids.array());
+    }
+
+    public static EmailBatch of(long... ids) {
+        return new EmailBatch(ids.clone());
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    public void forEachId(LongConsumer action) {
+        for (long id : ids) {
+            action.accept(id);
+        }
+    }
+
+    public Email get(int index) {
+        return new Email(ids[index]);
+    }
+
+    // The same Email instance is passed for every record, callers must not keep it
+    public void forEachFlyweight(Consumer<Email> action) {
+        Email email = new Email();
+        for (long id : ids) {
+            email.setId(id);
+            action.accept(email);
+        }
+    }
+
+    public List<Email> asList() {
+        return new AbstractList<Email>() {
+            @Override
+            public Email get(int index) {
+                return EmailBatch.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "EmailBatch [size=" + ids.length + "]";
+    }
+}
@@ -0,0 +1,69 @@
+package com.shariqparwez.model;
+
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+// Batch of ids backed by a long[], passed between pipeline stages in place of List<Long>
+// so ids are never boxed and no stream is needed per stage
+public class IdBatch {
+    private final long[] ids;
+
+    private IdBatch(long[] ids) {
+        this.ids = ids;
+    }
+
+    public static IdBatch of(long... ids) {
+        return new IdBatch(ids.clone());
+    }
+
+    // Takes ownership of the array, callers must not modify it afterwards
+    public static IdBatch wrap(long[] ids) {
+        return new IdBatch(ids);
+    }
+
+    public static IdBatch range(long fromInclusive, long toExclusive) {
+        long[] ids = new long[(int) (toExclusive - fromInclusive)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = fromInclusive + i;
+        }
+        return new IdBatch(ids);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long get(int index) {
+        return ids[index];
+    }
+
+    // Backing array, shared with the columnar batches of this package without copying
+    long[] array() {
+        return ids;
+    }
+
+    public LongStream stream() {
+        return Arrays.stream(ids);
+    }
+
+    public User[] toUsers() {
+        User[] users = new User[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            users[i] = new User(ids[i]);
+        }
+        return users;
+    }
+
+    public Email[] toEmails() {
+        Email[] emails = new Email[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            emails[i] = new Email(ids[i]);
+        }
+        return emails;
+    }
+
+    @Override
+    public String toString() {
+        return "IdBatch [size=" + ids.length + "]";
+    }
+}
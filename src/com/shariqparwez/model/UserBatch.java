@@ -0,0 +1,76 @@
+package com.shariqparwez.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Columnar batch of users: one long[] column of ids instead of one User object per record.
+//
+// Fetch and display stages work on the column directly (getId, forEachId). When User objects are needed
+// they are created lazily: get(i) and asList() build one per access, forEachFlyweight() re-points a single
+// User at each record in turn, so nothing per record is allocated or retained.
+public class UserBatch {
+    private final long[] ids;
+
+    private UserBatch(long[] ids) {
+        this.ids = ids;
+    }
+
+    // Shares the id column of the batch, no copy
+    public static UserBatch of(IdBatch ids) {
+        return new UserBatch(ids.array());
+    }
+
+    public static UserBatch of(long... ids) {
+        return new UserBatch(ids.clone());
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    public void forEachId(LongConsumer action) {
+        for (long id : ids) {
+            action.accept(id);
+        }
+    }
+
+    // New User for the record, only when a caller really needs the object
+    public User get(int index) {
+        return new User(ids[index]);
+    }
+
+    // The same User instance is passed for every record, callers must not keep it
+    public void forEachFlyweight(Consumer<User> action) {
+        User user = new User();
+        for (long id : ids) {
+            user.setId(id);
+            action.accept(user);
+        }
+    }
+
+    // Read-only List view, creating User objects on access
+    public List<User> asList() {
+        return new AbstractList<User>() {
+            @Override
+            public User get(int index) {
+                return UserBatch.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "UserBatch [size=" + ids.length + "]";
+    }
+}
@@ -1,14 +1,26 @@
 package com.shariqparwez.performant;
 
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.http.LimitedHttpClient;
+import com.shariqparwez.http.RateLimitedHttpClient;
+import com.shariqparwez.http.SharedHttpClient;
+import com.shariqparwez.http.SingleFlightHttpClient;
+import com.shariqparwez.http.StreamingBodySubscriber;
+import com.shariqparwez.http.StubHttpServer;
+import com.shariqparwez.pipeline.PipelineRunner;
+import com.shariqparwez.resilience.AdaptiveLimiter;
+import com.shariqparwez.resilience.KeyedRateLimiter;
+
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class HttpClientExample {
     public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
@@ -22,14 +34,27 @@ public class HttpClientExample {
         //asyncPerformantOperationThree();
 
         // ## 4 -  CDelaying the Start of the HttpClient Example
-        asyncPerformantOperationFour();
+        //asyncPerformantOperationFour();
+
+        // ## 5 -  Reusing the shared HttpClient against a local server
+        //asyncPerformantOperationFive();
+
+        // ## 6 -  Streaming the response body instead of holding it as a String
+        //asyncPerformantOperationSix();
+
+        // ## 7 -  Capping in-flight requests with a limit adapted to the server's latency
+        //asyncPerformantOperationSeven();
+
+        // ## 8 -  Sharing one request between pipelines asking for the same URI at the same time
+        //asyncPerformantOperationEight();
+
+        // ## 9 -  Throttling requests to a steady rate per host instead of firing them all at once
+        asyncPerformantOperationNine();
     }
 
     private static void asyncPerformantOperationOne() throws IOException, InterruptedException {
-        // Create HttpClient
-        HttpClient client = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_1_1)
-                .build();
+        // Use the shared HttpClient, which keeps connections pooled between calls
+        SharedHttpClient client = SharedHttpClient.shared();
 
         // Build request
         HttpRequest request = HttpRequest.newBuilder()
@@ -48,10 +73,8 @@ public class HttpClientExample {
     }
 
     private static void asyncPerformantOperationTwo() throws IOException, InterruptedException, ExecutionException {
-        // Create HttpClient
-        HttpClient client = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_1_1)
-                .build();
+        // Use the shared HttpClient, which keeps connections pooled between calls
+        SharedHttpClient client = SharedHttpClient.shared();
 
         // Build request
         HttpRequest request = HttpRequest.newBuilder()
@@ -75,12 +98,10 @@ public class HttpClientExample {
 
     private static void asyncPerformantOperationThree() throws IOException, InterruptedException, ExecutionException {
         // Create executor with thread pool of single thread
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = ExecutorFactory.newSingleThreadExecutor("http-client-three");
 
-        // Create HttpClient
-        HttpClient client = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_1_1)
-                .build();
+        // Use the shared HttpClient, which keeps connections pooled between calls
+        SharedHttpClient client = SharedHttpClient.shared();
 
         // Build request
         HttpRequest request = HttpRequest.newBuilder()
@@ -106,13 +127,14 @@ public class HttpClientExample {
     }
 
     private static void asyncPerformantOperationFour() throws IOException, InterruptedException, ExecutionException {
+        // Create runner which tracks the pipeline and owns its executor
+        PipelineRunner runner = new PipelineRunner();
+
         // Create executor with thread pool of single thread
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = runner.own(ExecutorFactory.newSingleThreadExecutor("http-client-four"));
 
-        // Create HttpClient
-        HttpClient client = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_1_1)
-                .build();
+        // Use the shared HttpClient, which keeps connections pooled between calls
+        SharedHttpClient client = SharedHttpClient.shared();
 
         // Build request
         HttpRequest request = HttpRequest.newBuilder()
@@ -128,20 +150,145 @@ public class HttpClientExample {
                 start.thenCompose(nil -> client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
 
         // Chain further tasks
-        future.thenAcceptAsync(
+        runner.track(future.thenAcceptAsync(
                 response -> {
                     String body = response.body();
                     System.out.println("body = " + body.length() + " [" + Thread.currentThread().getName() + "]");
                 }, executor)
-                .thenRun(() -> System.out.println("Done!"));
+                .thenRun(() -> System.out.println("Done!")));
 
         // Complete the task 'start' completableFuture
         start.complete(null);
 
-        // Make main thread sleep, for completion of async execution
-        Thread.sleep(3_000);
+        // Wait for completion of async execution, then terminate JVM
+        runner.shutdown(Duration.ofSeconds(10));
+    }
 
-        // Terminate JVM post completion
-        executor.shutdown();
+    private static void asyncPerformantOperationFive() throws IOException {
+        // Start a local server so the example runs offline
+        try (StubHttpServer server = new StubHttpServer(64 * 1024, 10)) {
+            // Use the shared HttpClient, which keeps connections pooled between calls
+            SharedHttpClient client = SharedHttpClient.shared();
+
+            // Build request
+            HttpRequest request = HttpRequest.newBuilder()
+                    .GET()
+                    .uri(server.uri("/users"))
+                    .build();
+
+            // Fire a burst of requests, all of them served over a handful of connections
+            List<CompletableFuture<Integer>> lengths = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                lengths.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                        .thenApply(response -> response.body().length()));
+            }
+            CompletableFuture.allOf(lengths.toArray(new CompletableFuture<?>[0])).join();
+
+            // Print server side connection count and client side metrics
+            System.out.println("Requests = " + server.getRequestCount()
+                    + ", connections = " + server.getConnectionCount());
+            System.out.println(client);
+        }
+    }
+
+    private static void asyncPerformantOperationSix() throws IOException {
+        // Start a local server returning a 4 MB body
+        try (StubHttpServer server = new StubHttpServer(4 * 1024 * 1024, 0)) {
+            // Use the shared HttpClient, which keeps connections pooled between calls
+            SharedHttpClient client = SharedHttpClient.shared();
+
+            // Build request
+            HttpRequest request = HttpRequest.newBuilder()
+                    .GET()
+                    .uri(server.uri("/large"))
+                    .build();
+
+            // Length, hash and line count are computed buffer by buffer as the body arrives
+            client.sendAsync(request, StreamingBodySubscriber.handler())
+                    .thenAccept(response -> System.out.println(response.body()))
+                    .join();
+        }
+    }
+
+    private static void asyncPerformantOperationSeven() throws IOException {
+        // Start a local server which handles 4 requests at once, 50ms each
+        try (StubHttpServer server = new StubHttpServer(1_024, 50, 4)) {
+            // Decorate the shared HttpClient with an adaptive limit, at most 20 requests waiting for a permit
+            AdaptiveLimiter limiter = new AdaptiveLimiter("stub-server", 20);
+            LimitedHttpClient client = new LimitedHttpClient(SharedHttpClient.shared().client(), limiter);
+
+            // Build request
+            HttpRequest request = HttpRequest.newBuilder()
+                    .GET()
+                    .uri(server.uri("/users"))
+                    .build();
+
+            // Fire 5 bursts of 40 requests, the limit shrinks as the server slows down and the excess is shed
+            for (int burst = 1; burst <= 5; burst++) {
+                List<CompletableFuture<String>> outcomes = new ArrayList<>();
+                for (int i = 0; i < 40; i++) {
+                    outcomes.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                            .handle((response, e) -> e == null ? "ok" : "shed"));
+                }
+                CompletableFuture.allOf(outcomes.toArray(new CompletableFuture<?>[0])).join();
+
+                // Print current limit, queue depth and rejections
+                long ok = outcomes.stream().filter(outcome -> outcome.join().equals("ok")).count();
+                System.out.println("Burst " + burst + " : ok = " + ok + ", " + limiter);
+            }
+        }
+    }
+
+    private static void asyncPerformantOperationEight() throws IOException {
+        // Start a local server answering after 100ms
+        try (StubHttpServer server = new StubHttpServer(16 * 1024, 100)) {
+            // Decorate the shared HttpClient, identical requests in flight share one call and its parsed body
+            SingleFlightHttpClient<String> client = new SingleFlightHttpClient<>(
+                    SharedHttpClient.shared().client(), HttpResponse.BodyHandlers.ofString());
+
+            // Build request
+            HttpRequest request = HttpRequest.newBuilder()
+                    .GET()
+                    .uri(server.uri("/users"))
+                    .build();
+
+            // 50 pipelines ask for the same URI at once
+            List<CompletableFuture<Integer>> lengths = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                lengths.add(client.sendAsync(request).thenApply(response -> response.body().length()));
+            }
+            CompletableFuture.allOf(lengths.toArray(new CompletableFuture<?>[0])).join();
+
+            // Print how many requests reached the server
+            System.out.println("Requests = " + server.getRequestCount() + ", " + client);
+        }
+    }
+
+    private static void asyncPerformantOperationNine() throws IOException {
+        // Start a local server answering after 10ms
+        try (StubHttpServer server = new StubHttpServer(1_024, 10)) {
+            // Decorate the shared HttpClient with 20 requests per second per host, bursts of 5, waits up to 2s
+            KeyedRateLimiter<String> limiter = new KeyedRateLimiter<>("per-host", 20, 5, Duration.ofSeconds(2));
+            RateLimitedHttpClient client = new RateLimitedHttpClient(SharedHttpClient.shared().client(), limiter);
+
+            // Build request
+            HttpRequest request = HttpRequest.newBuilder()
+                    .GET()
+                    .uri(server.uri("/users"))
+                    .build();
+
+            // Fire 30 requests at once, the first 5 go straight away and the others are spaced 50ms apart
+            long start = System.nanoTime();
+            List<CompletableFuture<String>> outcomes = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                outcomes.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .handle((response, e) -> e == null ? "ok" : "refused"));
+            }
+            CompletableFuture.allOf(outcomes.toArray(new CompletableFuture<?>[0])).join();
+
+            // Print how long the requests took and what the limiter did
+            long ok = outcomes.stream().filter(outcome -> outcome.join().equals("ok")).count();
+            System.out.println("ok = " + ok + " in " + (System.nanoTime() - start) / 1_000_000 + "ms, " + limiter);
+        }
     }
 }
@@ -1,18 +1,33 @@
 package com.shariqparwez.performant;
 
+import com.shariqparwez.checkpoint.CheckpointCodec;
+import com.shariqparwez.checkpoint.CheckpointLog;
+import com.shariqparwez.checkpoint.CheckpointedPipeline;
+import com.shariqparwez.executor.ExecutionMode;
+import com.shariqparwez.executor.ExecutorFactory;
+import com.shariqparwez.loader.UserLoader;
+import com.shariqparwez.log.AsyncLogSink;
 import com.shariqparwez.model.User;
+import com.shariqparwez.pipeline.PipelineRunner;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class TriggerExample {
+    // Every line goes through the async sink instead of locking System.out, so none is written out of order
+    private static final AsyncLogSink LOG = AsyncLogSink.stdout();
+
     public static void main(String[] args) {
         // ## 1 -  Setting up of chained tasks
         //asyncPerformantOperationOne();
@@ -21,10 +36,19 @@ public class TriggerExample {
         //asyncPerformantOperationTwo();
 
         // ## 2 -  Controlling Threads with the Delayed Start Pattern
-        asyncPerformantOperationThree();
+        //asyncPerformantOperationThree();
+
+        // ## 4 -  Sharing one batched UserLoader between several delayed start pipelines
+        //asyncPerformantOperationFour();
+
+        // ## 5 -  Checkpointing the Delayed Start Pattern so that a restarted pipeline skips completed stages
+        asyncPerformantOperationFive();
 	}
 
     private static void asyncPerformantOperationOne() {
+        // Create runner which tracks the pipeline
+        PipelineRunner runner = new PipelineRunner();
+
         // Create Supplier
         Supplier<List<Long>> supplyIDs = () -> {
             sleep(200);
@@ -39,20 +63,24 @@ public class TriggerExample {
 
         // Create Consumer
         Consumer<List<User>> displayer = users -> {
-            System.out.println("In thread " + Thread.currentThread().getName());
-            users.forEach(System.out::println);
+            LOG.log("In thread " + Thread.currentThread().getName());
+            users.forEach(LOG::log);
         };
 
         // Chain all tasks together
-        CompletableFuture<List<Long>> supply = CompletableFuture.supplyAsync(supplyIDs);
+        // Blocking stages run on the executor picked by -Dpipeline.execution.mode
+        CompletableFuture<List<Long>> supply = CompletableFuture.supplyAsync(supplyIDs, ExecutionMode.blockingStages());
         CompletableFuture<List<User>> fetch  = supply.thenApply(fetchUsers);
-        CompletableFuture<Void> display = fetch.thenAccept(displayer);
+        CompletableFuture<Void> display = runner.track(fetch.thenAccept(displayer));
 
-        // Make main thread sleep so that tasks can get completed
-        sleep(1_000);
+        // Wait until the tasks are completed
+        runner.shutdown(Duration.ofSeconds(5));
     }
 
     private static void asyncPerformantOperationTwo() {
+        // Create runner which tracks the pipeline
+        PipelineRunner runner = new PipelineRunner();
+
         // Create Supplier
         Supplier<List<Long>> supplyIDs = () -> {
             sleep(200);
@@ -67,8 +95,8 @@ public class TriggerExample {
 
         // Create Consumer
         Consumer<List<User>> displayer = users -> {
-            System.out.println("In thread " + Thread.currentThread().getName());
-            users.forEach(System.out::println);
+            LOG.log("In thread " + Thread.currentThread().getName());
+            users.forEach(LOG::log);
         };
 
         // Build a completable future, using default constructor
@@ -78,18 +106,21 @@ public class TriggerExample {
         // Use start.thenApply to get the supplyIDs
         CompletableFuture<List<Long>> supply = start.thenApply(nil -> supplyIDs.get());
         CompletableFuture<List<User>> fetch  = supply.thenApply(fetchUsers);
-        CompletableFuture<Void> display = fetch.thenAccept(displayer);
+        CompletableFuture<Void> display = runner.track(fetch.thenAccept(displayer));
 
         // Complete the completable future 'start' task
         start.complete(null);
 
-        // Make main thread sleep so that tasks can get completed
-        sleep(1_000);
+        // Wait until the tasks are completed
+        runner.shutdown(Duration.ofSeconds(5));
     }
 
     private static void asyncPerformantOperationThree() {
+        // Create runner which tracks the pipeline and owns its executor
+        PipelineRunner runner = new PipelineRunner();
+
         // Create Executor Service thread pool with single thread
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = runner.own(ExecutorFactory.newSingleThreadExecutor("trigger-three"));
 
         // Create Supplier
         Supplier<List<Long>> supplyIDs = () -> {
@@ -105,8 +136,8 @@ public class TriggerExample {
 
         // Create Consumer
         Consumer<List<User>> displayer = users -> {
-            System.out.println("In thread " + Thread.currentThread().getName());
-            users.forEach(System.out::println);
+            LOG.log("In thread " + Thread.currentThread().getName());
+            users.forEach(LOG::log);
         };
 
         // Build a completable future, using default constructor
@@ -116,17 +147,116 @@ public class TriggerExample {
         // Use start.thenApply to get the supplyIDs
         CompletableFuture<List<Long>> supply = start.thenApply(nil -> supplyIDs.get());
         CompletableFuture<List<User>> fetch  = supply.thenApply(fetchUsers);
-        CompletableFuture<Void> display = fetch.thenAccept(displayer);
+        CompletableFuture<Void> display = runner.track(fetch.thenAccept(displayer));
 
         // Complete the completable future 'start' task
         // Running in thread pool
         start.completeAsync(() -> null, executor);
 
-        // Make main thread sleep so that tasks can get completed
-        sleep(1_000);
+        // Wait until the tasks are completed, then shutdown executor to let JVM terminate
+        runner.shutdown(Duration.ofSeconds(5));
+    }
+
+    private static void asyncPerformantOperationFour() {
+        // Create Function, pays 300 ms per call regardless of how many ids it gets
+        Function<List<Long>, List<User>> fetchUsers = ids -> {
+            sleep(300);
+            return ids.stream().map(User::new).collect(Collectors.toList());
+        };
+
+        // Create loader which batches load calls made within 10 ms into one fetchUsers call
+        UserLoader loader = new UserLoader(fetchUsers, 100, Duration.ofMillis(10), ExecutionMode.blockingStages());
+
+        // Create Consumer
+        Consumer<List<User>> displayer = users -> {
+            LOG.log("In thread " + Thread.currentThread().getName());
+            users.forEach(LOG::log);
+        };
+
+        // Build a completable future, using default constructor
+        CompletableFuture<Void> start = new CompletableFuture<>();
+
+        // Chain three pipelines with overlapping ids, all resolved by a single batch
+        List<List<Long>> idLists = Arrays.asList(
+                Arrays.asList(1L, 2L, 3L), Arrays.asList(3L, 4L, 5L), Arrays.asList(5L, 6L, 1L));
+        PipelineRunner runner = new PipelineRunner();
+        // Each pipeline is tracked by the runner so we can wait for all of them
+        idLists.forEach(ids -> runner.track(start.thenCompose(nil -> loader.loadMany(ids)).thenAccept(displayer)));
+
+        // Complete the completable future 'start' task
+        start.complete(null);
+
+        // Wait until the tasks are completed
+        runner.shutdown(Duration.ofSeconds(5));
+
+        LOG.log("Batches = " + loader.getBatchCount() + ", loads = " + loader.getLoadCount());
+        loader.close();
+    }
+
+    private static void asyncPerformantOperationFive() {
+        // Create Supplier
+        Supplier<List<Long>> supplyIDs = () -> {
+            sleep(200);
+            return Arrays.asList(1L, 2L, 3L);
+        };
+
+        // Create Consumer
+        Consumer<List<User>> displayer = users -> {
+            LOG.log("In thread " + Thread.currentThread().getName());
+            users.forEach(LOG::log);
+        };
+
+        Path file = Path.of(System.getProperty("java.io.tmpdir"), "trigger-five.wal");
+        try {
+            Files.deleteIfExists(file);
+
+            // First run dies in fetchUsers, second run is rebuilt from 'start' on the same log
+            for (int run = 1; run <= 2; run++) {
+                boolean crash = run == 1;
+
+                // Create Function, failing in the first run as if the JVM had died there
+                Function<List<Long>, List<User>> fetchUsers = ids -> {
+                    sleep(300);
+                    if (crash) {
+                        throw new IllegalStateException("Simulated crash in fetchUsers");
+                    }
+                    return ids.stream().map(User::new).collect(Collectors.toList());
+                };
+
+                try (CheckpointLog log = CheckpointLog.open(file)) {
+                    LOG.log("Run " + run + " recovered " + log.getRecoveredCount() + " stages in "
+                            + TimeUnit.NANOSECONDS.toMicros(log.getRecoveryNanos()) + " us");
+                    CheckpointedPipeline pipeline = new CheckpointedPipeline(log);
+
+                    // Build a completable future, using default constructor
+                    CompletableFuture<Void> start = new CompletableFuture<>();
+
+                    // Chain all tasks together, each stage's output is checkpointed before the next one runs
+                    CompletableFuture<List<Long>> supply =
+                            pipeline.thenSupply(start, "supplyIDs", supplyIDs, CheckpointCodec.ids());
+                    CompletableFuture<List<User>> fetch =
+                            pipeline.thenApply(supply, "fetchUsers", fetchUsers, CheckpointCodec.users());
+                    CompletableFuture<Void> display = pipeline.thenAccept(fetch, "displayer", displayer);
+
+                    // Complete the completable future 'start' task
+                    // Running in thread pool
+                    start.completeAsync(() -> null, ExecutionMode.blockingStages());
+
+                    // Wait until the tasks are completed
+                    display.exceptionally(e -> {
+                        LOG.log("Failed: " + e.getCause().getMessage());
+                        return null;
+                    }).join();
+                    LOG.log("Run " + run + " skipped supplyIDs = " + pipeline.isSkipped("supplyIDs")
+                            + ", overhead of supplyIDs = " + pipeline.getOverhead("supplyIDs"));
+                }
+            }
 
-        // Shutdown executor to let JVM terminate
-        executor.shutdown();
+            // The job is complete, so its log is no longer needed
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.error("Checkpoint log failed", e);
+        }
     }
 
     private static void sleep(int timeout) {
@@ -0,0 +1,44 @@
+package com.shariqparwez.pipeline;
+
+import com.shariqparwez.executor.PriorityExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+// Absolute point in time (System.nanoTime based) by which a pipeline has to finish
+public class Deadline {
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+
+    public boolean isExpired() {
+        return System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    // Throws DeadlineExceededException when the deadline has already passed
+    public void check(String stage) {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Deadline passed before stage " + stage);
+        }
+    }
+
+    // Executor queueing the pipeline's tasks by this deadline
+    public Executor on(PriorityExecutor executor) {
+        return executor.withDeadline(deadlineNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline [remaining=" + remaining().toMillis() + "ms]";
+    }
+}
@@ -0,0 +1,10 @@
+package com.shariqparwez.pipeline;
+
+// Raised by stages which start, or are still running, after their pipeline's deadline
+public class DeadlineExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
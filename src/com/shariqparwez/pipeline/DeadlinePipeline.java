@@ -0,0 +1,173 @@
+package com.shariqparwez.pipeline;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Delayed start pipeline with a single deadline, set when the start trigger fires and
+// shared by every stage chained through this pipeline.
+//
+// Stages reached after the deadline are skipped (fail with DeadlineExceededException), stages still
+// running when it passes are interrupted, and the losing branches of either/anyOf are cancelled
+// and interrupted so their threads go back to the pool.
+public class DeadlinePipeline {
+    private final Duration budget;
+    private final Executor executor;
+    private final CompletableFuture<Void> start = new CompletableFuture<>();
+    private final Queue<Stage<?>> running = new ConcurrentLinkedQueue<>();
+    private volatile Deadline deadline;
+
+    public DeadlinePipeline(Duration budget, Executor executor) {
+        this.budget = budget;
+        this.executor = executor;
+    }
+
+    // The start trigger, equivalent to the 'start' future of TriggerExample
+    public CompletableFuture<Void> start() {
+        return start;
+    }
+
+    // Deadline of this run, null until trigger() is called
+    public Deadline deadline() {
+        return deadline;
+    }
+
+    // Fix the deadline and release the chained stages
+    public void trigger() {
+        deadline = Deadline.after(budget);
+        CompletableFuture.delayedExecutor(budget.toNanos(), TimeUnit.NANOSECONDS).execute(this::expire);
+        start.complete(null);
+    }
+
+    public <T> CompletableFuture<T> supply(String name, Supplier<T> supplier) {
+        return thenApply(name, start, nil -> supplier.get());
+    }
+
+    public <T, R> CompletableFuture<R> thenApply(String name, CompletableFuture<T> upstream, Function<T, R> function) {
+        Stage<R> stage = new Stage<>(name);
+        running.add(stage);
+        stage.whenComplete((result, e) -> running.remove(stage));
+
+        upstream.whenComplete((value, e) -> {
+            if (e != null) {
+                stage.completeExceptionally(e);
+                return;
+            }
+            try {
+                executor.execute(() -> stage.run(() -> function.apply(value)));
+            } catch (RejectedExecutionException rejected) {
+                stage.completeExceptionally(rejected);
+            }
+        });
+        return stage;
+    }
+
+    public <T> CompletableFuture<Void> thenAccept(String name, CompletableFuture<T> upstream, Consumer<T> consumer) {
+        return thenApply(name, upstream, value -> {
+            consumer.accept(value);
+            return null;
+        });
+    }
+
+    // First of the two to succeed wins, the other one is cancelled and interrupted
+    public <T> CompletableFuture<T> either(CompletableFuture<T> first, CompletableFuture<T> second) {
+        return anyOf(List.of(first, second));
+    }
+
+    // First future to succeed wins and the rest are cancelled and interrupted;
+    // fails only when every future has failed
+    public <T> CompletableFuture<T> anyOf(List<? extends CompletableFuture<T>> futures) {
+        if (futures.isEmpty()) {
+            // Nothing could ever complete the winner
+            throw new IllegalArgumentException("anyOf needs at least one future");
+        }
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        for (CompletableFuture<T> future : futures) {
+            future.whenComplete((value, e) -> {
+                if (e == null) {
+                    winner.complete(value);
+                } else if (failed.incrementAndGet() == futures.size()) {
+                    winner.completeExceptionally(e);
+                }
+            });
+        }
+        winner.whenComplete((value, e) -> futures.forEach(future -> future.cancel(true)));
+        return winner;
+    }
+
+    private void expire() {
+        running.forEach(Stage::expire);
+    }
+
+    // Stage future which remembers the thread running it, so cancel(true) and expiry can interrupt it
+    private class Stage<T> extends CompletableFuture<T> {
+        private final String name;
+        private Thread runner;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        void run(Supplier<T> body) {
+            if (isDone()) {
+                // Cancelled before it got a thread
+                return;
+            }
+            try {
+                Deadline current = deadline;
+                if (current == null) {
+                    // Upstream did not come from start(), so it completed before there was a deadline to check
+                    throw new IllegalStateException("Stage " + name + " reached before the pipeline was triggered");
+                }
+                current.check(name);
+                synchronized (this) {
+                    runner = Thread.currentThread();
+                    // Cancelled or expired since the check above, before there was a runner to interrupt
+                    if (isDone()) {
+                        return;
+                    }
+                }
+                complete(body.get());
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                // Never hand a pool thread back with our interrupt still pending
+                Thread.interrupted();
+            }
+        }
+
+        void expire() {
+            if (completeExceptionally(new DeadlineExceededException("Deadline passed during stage " + name))) {
+                interruptRunner();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && mayInterruptIfRunning) {
+                interruptRunner();
+            }
+            return cancelled;
+        }
+
+        private synchronized void interruptRunner() {
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+    }
+}
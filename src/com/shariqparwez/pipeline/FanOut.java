@@ -0,0 +1,130 @@
+package com.shariqparwez.pipeline;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+// Starts N typed branch fetches from one upstream future and joins them into a single result.
+//
+// Every branch has its own timeout and fallback value: a branch which fails or is too slow is
+// filled with its fallback instead of failing the join, so the aggregate latency is bounded by the
+// largest branch timeout. Only a failure of the upstream itself fails the join.
+public class FanOut<I> {
+    private final CompletableFuture<I> upstream;
+    private final Executor executor;
+    private final List<Branch<?>> branches = new ArrayList<>();
+
+    private FanOut(CompletableFuture<I> upstream, Executor executor) {
+        this.upstream = upstream;
+        this.executor = executor;
+    }
+
+    public static <I> FanOut<I> from(CompletableFuture<I> upstream, Executor executor) {
+        return new FanOut<>(upstream, executor);
+    }
+
+    // Returns the key used to read this branch's value from the joined Result
+    public <T> Branch<T> branch(String name, Function<I, T> fetch, T fallback, Duration timeout) {
+        Branch<T> branch = new Branch<>(name, fallback);
+        branch.future = upstream.thenCompose(input ->
+                CompletableFuture.supplyAsync(() -> fetch.apply(input), executor)
+                        .orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS)
+                        .handle((value, e) -> {
+                            if (e == null) {
+                                return new Outcome<>(value, null);
+                            }
+                            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                            return new Outcome<>(fallback, cause);
+                        }));
+        branches.add(branch);
+        return branch;
+    }
+
+    public CompletableFuture<Result> join() {
+        CompletableFuture<?>[] futures = branches.stream()
+                .map(branch -> branch.future)
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures).thenApply(nil -> {
+            Map<Branch<?>, Outcome<?>> outcomes = new IdentityHashMap<>();
+            branches.forEach(branch -> outcomes.put(branch, branch.future.join()));
+            return new Result(outcomes);
+        });
+    }
+
+    public <R> CompletableFuture<R> join(Function<Result, R> combiner) {
+        return join().thenApply(combiner);
+    }
+
+    // Typed key of one branch
+    public static class Branch<T> {
+        private final String name;
+        private final T fallback;
+        private CompletableFuture<Outcome<T>> future;
+
+        private Branch(String name, T fallback) {
+            this.name = name;
+            this.fallback = fallback;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public T getFallback() {
+            return fallback;
+        }
+    }
+
+    // Values of all branches, fallbacks included
+    public static class Result {
+        private final Map<Branch<?>, Outcome<?>> outcomes;
+
+        private Result(Map<Branch<?>, Outcome<?>> outcomes) {
+            this.outcomes = outcomes;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T get(Branch<T> branch) {
+            return (T) outcome(branch).value;
+        }
+
+        public boolean isFallback(Branch<?> branch) {
+            return outcome(branch).failure != null;
+        }
+
+        public boolean isTimedOut(Branch<?> branch) {
+            return outcome(branch).failure instanceof TimeoutException;
+        }
+
+        // Why the branch fell back, null when it produced its own value
+        public Throwable getFailure(Branch<?> branch) {
+            return outcome(branch).failure;
+        }
+
+        private Outcome<?> outcome(Branch<?> branch) {
+            Outcome<?> outcome = outcomes.get(branch);
+            if (outcome == null) {
+                throw new IllegalArgumentException("Unknown branch " + branch.getName());
+            }
+            return outcome;
+        }
+    }
+
+    private static class Outcome<T> {
+        final T value;
+        final Throwable failure;
+
+        Outcome(T value, Throwable failure) {
+            this.value = value;
+            this.failure = failure;
+        }
+    }
+}
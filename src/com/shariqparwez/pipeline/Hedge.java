@@ -0,0 +1,120 @@
+package com.shariqparwez.pipeline;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Hedged request combinator: starts the primary call and only fires a backup when the primary
+// has not answered within the given percentile of recently observed latency (e.g. p95).
+// The first successful answer wins and the other call is cancelled.
+public class Hedge {
+    private static final int WARMUP_SAMPLES = 20;
+
+    private final double percentile;
+    private final Duration initialDelay;
+    private final Duration minDelay;
+    private final RollingPercentile latency;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong backupWins = new AtomicLong();
+
+    // initialDelay is used until enough latency samples have been observed
+    public Hedge(double percentile, Duration initialDelay, Duration minDelay) {
+        this.percentile = percentile;
+        this.initialDelay = initialDelay;
+        this.minDelay = minDelay;
+        this.latency = new RollingPercentile(1024, 64);
+    }
+
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call) {
+        calls.incrementAndGet();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        List<CompletableFuture<T>> attempts = new CopyOnWriteArrayList<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        AtomicBoolean backupStarted = new AtomicBoolean();
+
+        launch(call, result, attempts, outstanding, false);
+
+        // Fire the backup only if the primary is still outstanding after the hedge delay
+        long delay = hedgeDelayNanos();
+        CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+            if (!result.isDone() && backupStarted.compareAndSet(false, true)) {
+                hedges.incrementAndGet();
+                outstanding.incrementAndGet();
+                launch(call, result, attempts, outstanding, true);
+            }
+        });
+
+        // Whichever answer wins, cancel whatever is still running
+        result.whenComplete((value, e) -> attempts.forEach(attempt -> attempt.cancel(true)));
+        return result;
+    }
+
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    public long getBackupWinCount() {
+        return backupWins.get();
+    }
+
+    public double getHedgeRate() {
+        long total = calls.get();
+        return total == 0 ? 0 : (double) hedges.get() / total;
+    }
+
+    public Duration currentHedgeDelay() {
+        return Duration.ofNanos(hedgeDelayNanos());
+    }
+
+    private long hedgeDelayNanos() {
+        if (latency.size() < WARMUP_SAMPLES) {
+            return initialDelay.toNanos();
+        }
+        return Math.max(minDelay.toNanos(), latency.percentile(percentile, initialDelay.toNanos()));
+    }
+
+    // Every attempt's latency is recorded from the moment it called the backend, losers included: an attempt
+    // cancelled by the winner counts as at least the time it ran, else the slow tail would never be sampled
+    private <T> void launch(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result,
+                            List<CompletableFuture<T>> attempts, AtomicInteger outstanding, boolean backup) {
+        long start = System.nanoTime();
+        CompletableFuture<T> started;
+        try {
+            started = call.get();
+        } catch (Throwable e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> attempt = started;
+        attempts.add(attempt);
+        // The result may have completed, and cancelled the attempts it knew of, before this one was added
+        if (result.isDone()) {
+            attempt.cancel(true);
+        }
+
+        attempt.whenComplete((value, e) -> {
+            if (e == null || attempt.isCancelled()) {
+                latency.record(System.nanoTime() - start);
+            }
+            if (e == null) {
+                if (result.complete(value) && backup) {
+                    backupWins.incrementAndGet();
+                }
+            } else if (outstanding.decrementAndGet() == 0) {
+                // Only fail once no other attempt can still succeed
+                result.completeExceptionally(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package com.shariqparwez.pipeline;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Tracks the futures spawned by a pipeline and the executors it owns, so callers can wait for
+// exactly as long as the work takes instead of sleeping a fixed time before shutdown().
+public class PipelineRunner implements AutoCloseable {
+    private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+    private final List<ExecutorService> owned = new CopyOnWriteArrayList<>();
+    private volatile boolean shuttingDown;
+
+    // Executor closed by shutdown() once the pipeline has drained
+    public <E extends ExecutorService> E own(E executor) {
+        owned.add(executor);
+        return executor;
+    }
+
+    public <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        if (shuttingDown) {
+            throw new IllegalStateException("Pipeline runner is shutting down");
+        }
+        inFlight.add(future);
+        future.whenComplete((value, e) -> {
+            inFlight.remove(future);
+            synchronized (this) {
+                notifyAll();
+            }
+        });
+        return future;
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        return track(CompletableFuture.supplyAsync(supplier, executor));
+    }
+
+    public CompletableFuture<Void> runAsync(Runnable task, Executor executor) {
+        return track(CompletableFuture.runAsync(task, executor));
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    // Wait until every tracked future is done; false if the timeout elapsed first
+    public boolean awaitQuiescence(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (this) {
+            while (!inFlight.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return true;
+    }
+
+    // Stop accepting new work, drain in-flight stages, then close the owned executors.
+    // Returns false if the pipeline did not drain (or executors did not terminate) within the timeout.
+    public boolean shutdown(Duration timeout) {
+        shuttingDown = true;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        boolean drained;
+        try {
+            drained = awaitQuiescence(timeout);
+            for (ExecutorService executor : owned) {
+                executor.shutdown();
+            }
+            for (ExecutorService executor : owned) {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                drained &= executor.awaitTermination(remaining, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drained = false;
+        }
+        if (!drained) {
+            owned.forEach(ExecutorService::shutdownNow);
+        }
+        return drained;
+    }
+
+    @Override
+    public void close() {
+        shutdown(Duration.ofSeconds(30));
+    }
+}
@@ -0,0 +1,204 @@
+package com.shariqparwez.pipeline;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Runs whole pipelines with as few thread hops as possible, in place of picking an executor per stage.
+//
+// A pipeline starts on a work-stealing pool, so idle workers take queued pipelines from busy ones. Each
+// stage then runs on the thread which finished the previous one, except stages marked blocking: those are
+// moved to the dedicated blocking executor, unless the pipeline is already running on it. Stages after a
+// blocking one stay on the blocking thread, and stages after an asynchronous one (thenCompose) run on the
+// thread which completed its future, so a pipeline only changes thread when it has to.
+public class PipelineScheduler implements AutoCloseable {
+    private static final ThreadLocal<Boolean> ON_BLOCKING_THREAD = ThreadLocal.withInitial(() -> false);
+
+    private final ForkJoinPool workers;
+    private final Executor blocking;
+
+    private final AtomicLong pipelines = new AtomicLong();
+    private final AtomicLong stages = new AtomicLong();
+    private final AtomicLong hops = new AtomicLong();
+
+    public PipelineScheduler(String name, int parallelism, Executor blocking) {
+        this.workers = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(name + "-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, true);
+        this.blocking = blocking;
+    }
+
+    public <T> Pipeline<T> supply(Supplier<T> supplier) {
+        return new Pipeline<Void>(Collections.emptyList()).then(Kind.INLINE, nil -> supplier.get());
+    }
+
+    public <T> Pipeline<T> supplyBlocking(Supplier<T> supplier) {
+        return new Pipeline<Void>(Collections.emptyList()).then(Kind.BLOCKING, nil -> supplier.get());
+    }
+
+    public long getPipelineCount() {
+        return pipelines.get();
+    }
+
+    public long getStageCount() {
+        return stages.get();
+    }
+
+    // Hand-offs to another thread: the start of each pipeline, plus every move onto the blocking executor
+    public long getHopCount() {
+        return hops.get();
+    }
+
+    public long getStealCount() {
+        return workers.getStealCount();
+    }
+
+    public boolean shutdown(Duration timeout) throws InterruptedException {
+        workers.shutdown();
+        return workers.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "PipelineScheduler [pipelines=" + pipelines.get() + ", stages=" + stages.get()
+                + ", hops=" + hops.get() + ", steals=" + workers.getStealCount() + "]";
+    }
+
+    private enum Kind {
+        INLINE, BLOCKING, ASYNC
+    }
+
+    private static class Stage {
+        final Kind kind;
+        final Function<Object, Object> function;
+
+        Stage(Kind kind, Function<Object, Object> function) {
+            this.kind = kind;
+            this.function = function;
+        }
+    }
+
+    // Immutable list of stages, every then... call returns a longer pipeline
+    public class Pipeline<T> {
+        private final List<Stage> stages;
+
+        private Pipeline(List<Stage> stages) {
+            this.stages = stages;
+        }
+
+        public <R> Pipeline<R> thenApply(Function<T, R> function) {
+            return then(Kind.INLINE, function);
+        }
+
+        public <R> Pipeline<R> thenApplyBlocking(Function<T, R> function) {
+            return then(Kind.BLOCKING, function);
+        }
+
+        public <R> Pipeline<R> thenCompose(Function<T, CompletableFuture<R>> function) {
+            return then(Kind.ASYNC, function);
+        }
+
+        public Pipeline<Void> thenAccept(Consumer<T> consumer) {
+            return then(Kind.INLINE, value -> {
+                consumer.accept(value);
+                return null;
+            });
+        }
+
+        // Schedules one run of the pipeline
+        public CompletableFuture<T> start() {
+            pipelines.incrementAndGet();
+            CompletableFuture<Object> result = new CompletableFuture<>();
+            if (stages.get(0).kind == Kind.BLOCKING) {
+                hop(blocking, null, 0, result);
+            } else {
+                hop(workers, null, 0, result);
+            }
+            @SuppressWarnings("unchecked")
+            CompletableFuture<T> typed = (CompletableFuture<T>) (CompletableFuture<?>) result;
+            return typed;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <R> Pipeline<R> then(Kind kind, Function<T, ?> function) {
+            List<Stage> longer = new ArrayList<>(stages);
+            longer.add(new Stage(kind, value -> function.apply((T) value)));
+            return new Pipeline<>(Collections.unmodifiableList(longer));
+        }
+
+        private void hop(Executor executor, Object input, int index, CompletableFuture<Object> result) {
+            hops.incrementAndGet();
+            boolean toBlocking = executor == blocking;
+            try {
+                executor.execute(() -> {
+                    if (!toBlocking) {
+                        run(input, index, result);
+                        return;
+                    }
+                    ON_BLOCKING_THREAD.set(true);
+                    try {
+                        run(input, index, result);
+                    } finally {
+                        ON_BLOCKING_THREAD.set(false);
+                    }
+                });
+            } catch (Throwable e) {
+                // e.g. rejected by a bounded executor
+                result.completeExceptionally(e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void run(Object input, int index, CompletableFuture<Object> result) {
+            Object value = input;
+            for (int i = index; i < stages.size(); i++) {
+                Stage stage = stages.get(i);
+                if (stage.kind == Kind.BLOCKING && !ON_BLOCKING_THREAD.get()) {
+                    hop(blocking, value, i, result);
+                    return;
+                }
+                PipelineScheduler.this.stages.incrementAndGet();
+                try {
+                    value = stage.function.apply(value);
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                if (stage.kind == Kind.ASYNC) {
+                    if (value == null) {
+                        result.completeExceptionally(new NullPointerException("thenCompose function returned null"));
+                        return;
+                    }
+                    int next = i + 1;
+                    ((CompletableFuture<Object>) value).whenComplete((composed, e) -> {
+                        if (e != null) {
+                            result.completeExceptionally(e);
+                        } else {
+                            run(composed, next, result);
+                        }
+                    });
+                    return;
+                }
+            }
+            result.complete(value);
+        }
+    }
+}
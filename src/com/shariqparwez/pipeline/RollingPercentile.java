@@ -0,0 +1,44 @@
+package com.shariqparwez.pipeline;
+
+import java.util.Arrays;
+
+// Percentile over the last N recorded values. The sorted view is rebuilt at most
+// once every 'refreshEvery' samples, so reading it on every call stays cheap.
+public class RollingPercentile {
+    private final long[] window;
+    private final int refreshEvery;
+    private int next;
+    private int size;
+    private int sinceRefresh;
+    private long[] sorted = new long[0];
+
+    public RollingPercentile(int windowSize, int refreshEvery) {
+        this.window = new long[windowSize];
+        this.refreshEvery = refreshEvery;
+    }
+
+    public synchronized void record(long value) {
+        window[next] = value;
+        next = (next + 1) % window.length;
+        size = Math.min(size + 1, window.length);
+        sinceRefresh++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Value at the given percentile (0 - 100), or 'fallback' when nothing is recorded yet
+    public synchronized long percentile(double percentile, long fallback) {
+        if (size == 0) {
+            return fallback;
+        }
+        if (sinceRefresh >= refreshEvery || sorted.length != size) {
+            sorted = Arrays.copyOf(window, size);
+            Arrays.sort(sorted);
+            sinceRefresh = 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,222 @@
+package com.shariqparwez.resilience;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Concurrency limit for an asynchronous call, adapted to the latency and errors it observes (AIMD).
+//
+// The no-load round trip time is the smallest one seen over roughly the last 100 samples. A call slower than
+// 'latencyTolerance' times that, or failing, or whose result the caller marks as overloaded, shrinks the
+// limit by 'backoffRatio'; any other call grows it by 1/limit, i.e. by about one per limit's worth of calls,
+// as long as the limit is actually being used. Calls over the limit wait in a FIFO of 'maxQueue' entries;
+// once that is full they fail fast with CallNotPermittedException. A waiting call is started on the executor
+// when a slot frees up, never on the thread which completed the previous call, and skipped if its caller
+// cancelled it in the meantime.
+public class AdaptiveLimiter {
+    private static final int RTT_WINDOW = 100;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final Executor executor;
+
+    // Guarded by 'this'
+    private final Queue<Queued> waiting = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long noLoadRtt = Long.MAX_VALUE;
+    private long windowMinRtt = Long.MAX_VALUE;
+    private int windowSamples;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong increases = new AtomicLong();
+    private final AtomicLong decreases = new AtomicLong();
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, int maxQueue,
+                           double latencyTolerance, double backoffRatio, Executor executor) {
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.executor = executor;
+    }
+
+    // Starts at 20 in flight, between 1 and 1000, backs off by 10% when latency doubles,
+    // waiting calls are started on the common pool
+    public AdaptiveLimiter(String name, int maxQueue) {
+        this(name, 20, 1, 1_000, maxQueue, 2.0, 0.9, ForkJoinPool.commonPool());
+    }
+
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call) {
+        return call(call, value -> false);
+    }
+
+    // 'overloaded' marks successful results which still mean the remote is overloaded (e.g. HTTP 503)
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call, Predicate<T> overloaded) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable task = () -> {
+            long start = System.nanoTime();
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+            } catch (Throwable e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((value, e) -> {
+                long rtt = System.nanoTime() - start;
+                boolean dropped = true;
+                Throwable failure = e;
+                try {
+                    if (e == null) {
+                        dropped = overloaded.test(value);
+                    }
+                } catch (Throwable predicateFailure) {
+                    // Counted as overloaded, and the call fails with it
+                    failure = predicateFailure;
+                } finally {
+                    release(rtt, dropped);
+                }
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+
+        synchronized (this) {
+            if (inFlight >= (int) limit) {
+                if (waiting.size() >= maxQueue) {
+                    rejected.incrementAndGet();
+                    return CompletableFuture.failedFuture(
+                            new CallNotPermittedException("Limiter " + name + " is full at " + (int) limit));
+                }
+                waiting.add(new Queued(result, task));
+                return result;
+            }
+            inFlight++;
+        }
+        task.run();
+        return result;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueueDepth() {
+        return waiting.size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getIncreaseCount() {
+        return increases.get();
+    }
+
+    public long getDecreaseCount() {
+        return decreases.get();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AdaptiveLimiter [name=" + name + ", limit=" + (int) limit + ", inFlight=" + inFlight
+                + ", queued=" + waiting.size() + ", rejected=" + rejected.get()
+                + ", noLoadRtt=" + (noLoadRtt == Long.MAX_VALUE ? 0 : noLoadRtt / 1_000) + "us]";
+    }
+
+    private void release(long rtt, boolean dropped) {
+        synchronized (this) {
+            sample(rtt, dropped);
+            inFlight--;
+        }
+        while (startWaiting()) {
+            // A rejected hand-off gave its slot back, offer it to the next waiting call
+        }
+    }
+
+    // Starts as many waiting calls as the (possibly changed) limit allows, returns true if the executor
+    // rejected one of them
+    private boolean startWaiting() {
+        List<Queued> next = new ArrayList<>();
+        synchronized (this) {
+            while (inFlight < (int) limit && !waiting.isEmpty()) {
+                Queued queued = waiting.poll();
+                if (queued.result.isDone()) {
+                    // Cancelled by its caller while it waited
+                    continue;
+                }
+                inFlight++;
+                next.add(queued);
+            }
+        }
+        boolean rejectedAny = false;
+        for (Queued queued : next) {
+            try {
+                executor.execute(queued.task);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    inFlight--;
+                }
+                queued.result.completeExceptionally(e);
+                rejectedAny = true;
+            }
+        }
+        return rejectedAny;
+    }
+
+    // Called with the lock held
+    private void sample(long rtt, boolean dropped) {
+        // Only successes are RTT samples: a quick failure (503, connection refused) would drag the baseline down
+        // and make every later success look slow.
+        // A new minimum applies at once, a higher one only after a whole window (e.g. the remote got slower)
+        if (!dropped) {
+            windowMinRtt = Math.min(windowMinRtt, rtt);
+            noLoadRtt = Math.min(noLoadRtt, rtt);
+            if (++windowSamples >= RTT_WINDOW) {
+                noLoadRtt = windowMinRtt;
+                windowMinRtt = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+        }
+
+        if (dropped || rtt > noLoadRtt * latencyTolerance) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+            decreases.incrementAndGet();
+        } else if (inFlight >= limit / 2) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+            increases.incrementAndGet();
+        }
+    }
+
+    private static class Queued {
+        final CompletableFuture<?> result;
+        final Runnable task;
+
+        Queued(CompletableFuture<?> result, Runnable task) {
+            this.result = result;
+            this.task = task;
+        }
+    }
+}
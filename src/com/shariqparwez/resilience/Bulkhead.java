@@ -0,0 +1,69 @@
+package com.shariqparwez.resilience;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Semaphore bulkhead: at most 'maxConcurrentCalls' calls of a stage run at once, extra calls
+// fail fast with the fallback instead of queueing up behind a slow backend
+public class Bulkhead {
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final Semaphore permits;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public Bulkhead(String name, int maxConcurrentCalls) {
+        this.name = name;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.permits = new Semaphore(maxConcurrentCalls);
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Function<Throwable, T> fallback,
+                                                Executor executor) {
+        return call(() -> CompletableFuture.supplyAsync(supplier, executor), fallback);
+    }
+
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call, Function<Throwable, T> fallback) {
+        if (!permits.tryAcquire()) {
+            rejected.incrementAndGet();
+            return CompletableFuture.completedFuture(
+                    fallback.apply(new CallNotPermittedException("Bulkhead " + name + " is full")));
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (Throwable e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.handle((value, e) -> {
+            permits.release();
+            if (e == null) {
+                return value;
+            }
+            return fallback.apply(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getActiveCalls() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Bulkhead [name=" + name + ", active=" + getActiveCalls() + "/" + maxConcurrentCalls
+                + ", rejected=" + rejected.get() + "]";
+    }
+}
@@ -0,0 +1,15 @@
+package com.shariqparwez.resilience;
+
+// Raised (and handed to the fallback) when a circuit breaker, bulkhead or limiter refuses to run a call
+public class CallNotPermittedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public CallNotPermittedException(String message) {
+        super(message);
+    }
+
+    // Without a stack trace, so it can be built once and shared by every call a limiter refuses on a hot path
+    CallNotPermittedException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+}
@@ -0,0 +1,228 @@
+package com.shariqparwez.resilience;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Circuit breaker for pipeline stages, used in place of exceptionally().
+//
+// CLOSED records the outcome of the last 'windowSize' calls. Once at least 'minimumCalls' are recorded and
+// the failure rate or slow call rate reaches its threshold, the breaker goes OPEN and every call fails fast
+// with the fallback, without running the stage. After 'openDuration' it goes HALF_OPEN and lets
+// 'halfOpenCalls' trial calls through: all succeeding closes it again, any failure opens it again.
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    // Sliding window of outcomes, guarded by 'this'
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    // Bumped on every transition, outcomes of calls admitted under an older one are not counted
+    private long generation;
+    private long openedAt;
+    private int halfOpenStarted;
+    private int halfOpenSucceeded;
+
+    private final AtomicLong notPermitted = new AtomicLong();
+    private final Map<String, AtomicLong> transitions = new ConcurrentHashMap<>();
+    private final List<BiConsumer<State, State>> listeners = new CopyOnWriteArrayList<>();
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          Duration slowCallDuration, double slowCallRateThreshold, Duration openDuration,
+                          int halfOpenCalls) {
+        this.name = name;
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    // Run the supplier on the executor unless the breaker is open; failures and refusals go to the fallback
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Function<Throwable, T> fallback,
+                                                Executor executor) {
+        return call(() -> CompletableFuture.supplyAsync(supplier, executor), fallback);
+    }
+
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call, Function<Throwable, T> fallback) {
+        long admittedIn = tryAcquire();
+        if (admittedIn < 0) {
+            notPermitted.incrementAndGet();
+            return CompletableFuture.completedFuture(
+                    fallback.apply(new CallNotPermittedException("Circuit breaker " + name + " is " + getState())));
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (Throwable e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.handle((value, e) -> {
+            record(admittedIn, e != null, System.nanoTime() - start >= slowCallNanos);
+            if (e == null) {
+                return value;
+            }
+            return fallback.apply(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+        });
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getNotPermittedCount() {
+        return notPermitted.get();
+    }
+
+    // Number of transitions between the two states so far
+    public long getTransitionCount(State from, State to) {
+        AtomicLong count = transitions.get(from + "->" + to);
+        return count == null ? 0 : count.get();
+    }
+
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0 : 100.0 * failures / recorded;
+    }
+
+    public synchronized double getSlowCallRate() {
+        return recorded == 0 ? 0 : 100.0 * slowCalls / recorded;
+    }
+
+    public void onStateTransition(BiConsumer<State, State> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker [name=" + name + ", state=" + getState()
+                + ", failureRate=" + String.format("%.1f", getFailureRate()) + "%"
+                + ", slowCallRate=" + String.format("%.1f", getSlowCallRate()) + "%"
+                + ", notPermitted=" + notPermitted.get()
+                + ", transitions=" + transitions + "]";
+    }
+
+    // Returns the generation the call is admitted in, or -1 if it is not permitted
+    private long tryAcquire() {
+        State from;
+        State to;
+        long admittedIn;
+        synchronized (this) {
+            from = state;
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return -1;
+                }
+                moveTo(State.HALF_OPEN);
+            }
+            admittedIn = generation;
+            if (state == State.HALF_OPEN) {
+                if (halfOpenStarted >= halfOpenCalls) {
+                    admittedIn = -1;
+                } else {
+                    halfOpenStarted++;
+                }
+            }
+            to = state;
+        }
+        fireIfChanged(from, to);
+        return admittedIn;
+    }
+
+    private void record(long admittedIn, boolean failure, boolean slowCall) {
+        State from;
+        State to;
+        synchronized (this) {
+            from = state;
+            if (admittedIn != generation) {
+                // Started before the last transition, e.g. a slow call admitted while CLOSED completing
+                // during HALF_OPEN, it would otherwise be taken for one of the trial calls
+                return;
+            }
+            if (state == State.HALF_OPEN) {
+                if (failure || slowCall) {
+                    moveTo(State.OPEN);
+                } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                    moveTo(State.CLOSED);
+                }
+            } else if (state == State.CLOSED) {
+                if (recorded == failed.length) {
+                    failures -= failed[next] ? 1 : 0;
+                    slowCalls -= slow[next] ? 1 : 0;
+                } else {
+                    recorded++;
+                }
+                failed[next] = failure;
+                slow[next] = slowCall;
+                failures += failure ? 1 : 0;
+                slowCalls += slowCall ? 1 : 0;
+                next = (next + 1) % failed.length;
+
+                if (recorded >= minimumCalls
+                        && (getFailureRate() >= failureRateThreshold || getSlowCallRate() >= slowCallRateThreshold)) {
+                    moveTo(State.OPEN);
+                }
+            }
+            to = state;
+        }
+        fireIfChanged(from, to);
+    }
+
+    // Called with the lock held
+    private void moveTo(State target) {
+        transitions.computeIfAbsent(state + "->" + target, key -> new AtomicLong()).incrementAndGet();
+        state = target;
+        generation++;
+        if (target == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (target == State.HALF_OPEN) {
+            halfOpenStarted = 0;
+            halfOpenSucceeded = 0;
+        } else {
+            next = 0;
+            recorded = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+    }
+
+    // Listeners run outside the lock, with the states seen under it: re-reading the state here could report
+    // a later transition made by another thread, or none at all
+    private void fireIfChanged(State from, State to) {
+        if (from != to) {
+            listeners.forEach(listener -> listener.accept(from, to));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.shariqparwez.resilience;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// One RateLimiter bucket per key (e.g. per upstream host), all with the same rate, burst and maxWait.
+// A bucket is created on the first acquire for its key. Creating one also drops the buckets found idle (full,
+// with no waiter), at most once per 'idleSweep', so keys seen once do not pile up
+public class KeyedRateLimiter<K> {
+    private final String name;
+    private final double permitsPerSecond;
+    private final int burst;
+    private final Duration maxWait;
+    private final long idleSweepNanos;
+    private final Map<K, RateLimiter> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+    private final AtomicLong evicted = new AtomicLong();
+
+    public KeyedRateLimiter(String name, double permitsPerSecond, int burst, Duration maxWait) {
+        this(name, permitsPerSecond, burst, maxWait, Duration.ofSeconds(1));
+    }
+
+    public KeyedRateLimiter(String name, double permitsPerSecond, int burst, Duration maxWait, Duration idleSweep) {
+        RateLimiter.validate(permitsPerSecond, burst);
+        this.name = name;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.maxWait = maxWait;
+        this.idleSweepNanos = idleSweep.toNanos();
+    }
+
+    public RateLimiter limiter(K key) {
+        RateLimiter limiter = buckets.get(key);
+        if (limiter == null) {
+            sweepIdle();
+            limiter = buckets.computeIfAbsent(key,
+                    k -> new RateLimiter(name + "[" + k + "]", permitsPerSecond, burst, maxWait));
+        }
+        return limiter;
+    }
+
+    public CompletableFuture<Void> acquire(K key) {
+        return limiter(key).acquire();
+    }
+
+    public <T> CompletableFuture<T> call(K key, Supplier<CompletableFuture<T>> call) {
+        return limiter(key).call(call);
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(K key, Supplier<T> supplier, Executor executor) {
+        return limiter(key).supplyAsync(supplier, executor);
+    }
+
+    public int getKeyCount() {
+        return buckets.size();
+    }
+
+    // Buckets dropped because they were idle
+    public long getEvictedCount() {
+        return evicted.get();
+    }
+
+    @Override
+    public String toString() {
+        return "KeyedRateLimiter [name=" + name + ", keys=" + buckets.size() + ", evicted=" + evicted.get()
+                + ", buckets=" + buckets.values() + "]";
+    }
+
+    // A caller which got a bucket just before it was dropped still uses it, which costs at most one extra
+    // burst for that key, as the dropped bucket was full anyway
+    private void sweepIdle() {
+        long last = lastSweep.get();
+        long now = System.nanoTime();
+        if (now - last < idleSweepNanos || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        buckets.forEach((key, limiter) -> {
+            if (limiter.isIdle() && buckets.remove(key, limiter)) {
+                evicted.incrementAndGet();
+            }
+        });
+    }
+}
@@ -0,0 +1,185 @@
+package com.shariqparwez.resilience;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Token bucket refilled at 'permitsPerSecond' and holding up to 'burst' permits, with no thread ever waiting.
+//
+// The bucket is a single time stamp, the instant it will be empty again (GCRA): acquiring moves it forward by
+// one permit's worth of time with one CAS, and the permit is available once that instant is at most 'burst'
+// permits ahead of now. acquire() returns a future completed at once when a permit is available, or by a
+// scheduler when it will be. Waits are rounded up to 'tick' so one scheduled task releases every permit due
+// in the same tick; the permit futures complete on the scheduler thread, so use call() or supplyAsync() to
+// run work behind the limiter. Acquires which would wait longer than 'maxWait' fail at once with
+// CallNotPermittedException and reserve nothing.
+public class RateLimiter {
+    private final String name;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final long maxWaitNanos;
+    private final long tickNanos;
+    private final ScheduledExecutorService scheduler;
+    private final CallNotPermittedException refused;
+
+    // Instant (System.nanoTime) at which every permit handed out so far has been paid back
+    private final AtomicLong emptyUntil = new AtomicLong(System.nanoTime());
+    private final Map<Long, CompletableFuture<Void>> ticks = new ConcurrentHashMap<>();
+
+    private final LongAdder immediate = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public RateLimiter(String name, double permitsPerSecond, int burst, Duration maxWait) {
+        this(name, permitsPerSecond, burst, maxWait, Duration.ofMillis(1), Scheduler.INSTANCE);
+    }
+
+    public RateLimiter(String name, double permitsPerSecond, int burst, Duration maxWait, Duration tick,
+                       ScheduledExecutorService scheduler) {
+        validate(permitsPerSecond, burst);
+        this.name = name;
+        this.intervalNanos = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = burst * intervalNanos;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.tickNanos = Math.max(1, tick.toNanos());
+        this.scheduler = scheduler;
+        this.refused = new CallNotPermittedException("Rate limiter " + name + " would wait longer than maxWait", false);
+    }
+
+    public CompletableFuture<Void> acquire() {
+        return acquire(1);
+    }
+
+    // Completes when 'permits' permits are available, or fails if that is more than maxWait away.
+    // Throws IllegalArgumentException unless 1 <= permits <= burst
+    public CompletableFuture<Void> acquire(int permits) {
+        long wait = reserve(permits, maxWaitNanos);
+        if (wait < 0) {
+            return CompletableFuture.failedFuture(refused);
+        }
+        if (wait == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return release(System.nanoTime() + wait).copy();
+    }
+
+    // Takes a permit only if one is available right now
+    public boolean tryAcquire() {
+        return reserve(1, 0) == 0;
+    }
+
+    // Starts the call once a permit is available. It may be started on the scheduler thread, so it should only
+    // start asynchronous work, e.g. HttpClient.sendAsync
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call) {
+        return acquire().thenCompose(nil -> call.get());
+    }
+
+    // Runs the supplier on the executor once a permit is available, never on the scheduler thread
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        return acquire().thenApplyAsync(nil -> supplier.get(), executor);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Acquires served without waiting
+    public long getImmediateCount() {
+        return immediate.sum();
+    }
+
+    public long getDelayedCount() {
+        return delayed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimiter [name=" + name + ", permitsPerSecond=" + TimeUnit.SECONDS.toNanos(1) / intervalNanos
+                + ", burst=" + burstNanos / intervalNanos + ", immediate=" + immediate.sum()
+                + ", delayed=" + delayed.sum() + ", rejected=" + rejected.sum() + "]";
+    }
+
+    // Full and nothing scheduled: dropping the bucket loses no state, a new one starts out the same
+    boolean isIdle() {
+        return emptyUntil.get() - System.nanoTime() <= 0 && ticks.isEmpty();
+    }
+
+    static void validate(double permitsPerSecond, int burst) {
+        // Written so that NaN fails too
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive: " + permitsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be at least 1: " + burst);
+        }
+    }
+
+    // Returns how long to wait for the permits (0 for none), or -1 if that is longer than 'maxWait'
+    private long reserve(int permits, long maxWait) {
+        // More than 'burst' can never be available at once, they would be rejected forever or wait past maxWait
+        if (permits < 1 || permits > burstNanos / intervalNanos) {
+            throw new IllegalArgumentException("permits must be between 1 and burst (" + burstNanos / intervalNanos
+                    + "): " + permits);
+        }
+        long now = System.nanoTime();
+        while (true) {
+            long current = emptyUntil.get();
+            // An idle bucket is full, it does not save up more than 'burst' permits
+            long from = current - now > 0 ? current : now;
+            long next = from + permits * intervalNanos;
+            long wait = next - burstNanos - now;
+            if (wait > maxWait) {
+                rejected.increment();
+                return -1;
+            }
+            if (emptyUntil.compareAndSet(current, next)) {
+                if (wait <= 0) {
+                    immediate.increment();
+                    return 0;
+                }
+                delayed.increment();
+                return wait;
+            }
+        }
+    }
+
+    // Future of the tick in which 'dueAt' falls, completed by one scheduled task for all its permits
+    private CompletableFuture<Void> release(long dueAt) {
+        long tick = Math.floorDiv(dueAt, tickNanos) + 1;
+        CompletableFuture<Void> existing = ticks.get(tick);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        existing = ticks.putIfAbsent(tick, created);
+        if (existing != null) {
+            return existing;
+        }
+        scheduler.schedule(() -> {
+            ticks.remove(tick);
+            created.complete(null);
+        }, tick * tickNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        return created;
+    }
+
+    // Shared timer thread, it only completes permit futures and never runs the limited work itself
+    private static class Scheduler {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "rate-limiter-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,167 @@
+package com.shariqparwez.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Re-runs an asynchronous call with exponential backoff and full jitter.
+//
+// The wait before attempt n+1 is a random delay in [0, min(maxDelay, baseDelay * 2^(n-1))]. Waiting is a
+// task on a scheduler, so no thread is parked between attempts, and the scheduler hands each retry to the
+// executor (the common pool by default), so a supplier which blocks never holds up the timer. Only failures
+// matching 'retryable' are retried, and only while the retry budget allows it: every call deposits
+// 'budgetRatio' tokens (up to 'maxBudget') and every retry takes one, so retries stay a bounded fraction of
+// the traffic during an outage.
+public class Retry {
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+    private final Predicate<Throwable> retryable;
+    private final double budgetRatio;
+    private final double maxBudget;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+
+    // Guarded by 'this'
+    private double budget;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public Retry(int maxAttempts, Duration baseDelay, Duration maxDelay, Predicate<Throwable> retryable,
+                 double budgetRatio, double maxBudget) {
+        this(maxAttempts, baseDelay, maxDelay, retryable, budgetRatio, maxBudget, Scheduler.INSTANCE,
+                ForkJoinPool.commonPool());
+    }
+
+    public Retry(int maxAttempts, Duration baseDelay, Duration maxDelay, Predicate<Throwable> retryable,
+                 double budgetRatio, double maxBudget, ScheduledExecutorService scheduler, Executor executor) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayNanos = baseDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.retryable = retryable;
+        this.budgetRatio = budgetRatio;
+        this.maxBudget = maxBudget;
+        this.budget = maxBudget;
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    // Retries IllegalStateException, the failure of the example suppliers, and nothing else
+    public static Retry onIllegalState(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+        return new Retry(maxAttempts, baseDelay, maxDelay, e -> e instanceof IllegalStateException, 0.2, 10);
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        return call(() -> CompletableFuture.supplyAsync(supplier, executor));
+    }
+
+    // Completes with the first successful attempt, or fails with the failure of the last attempt
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call) {
+        calls.incrementAndGet();
+        synchronized (this) {
+            budget = Math.min(maxBudget, budget + budgetRatio);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(call, 1, result);
+        return result;
+    }
+
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    // Retries which were skipped because the budget was empty
+    public long getBudgetExhaustedCount() {
+        return budgetExhausted.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Retry [calls=" + calls.get() + ", retries=" + retries.get()
+                + ", budgetExhausted=" + budgetExhausted.get() + ", failures=" + failures.get() + "]";
+    }
+
+    private <T> void attempt(Supplier<CompletableFuture<T>> call, int attempt, CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (Throwable e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, e) -> {
+            if (e == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (attempt >= maxAttempts || !retryable.test(cause) || result.isDone()) {
+                failures.incrementAndGet();
+                result.completeExceptionally(cause);
+            } else if (!withdraw()) {
+                budgetExhausted.incrementAndGet();
+                failures.incrementAndGet();
+                result.completeExceptionally(cause);
+            } else {
+                retries.incrementAndGet();
+                scheduler.schedule(() -> retry(call, attempt + 1, result), backoff(attempt), TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    // Runs on the scheduler thread
+    private <T> void retry(Supplier<CompletableFuture<T>> call, int attempt, CompletableFuture<T> result) {
+        try {
+            executor.execute(() -> attempt(call, attempt, result));
+        } catch (RejectedExecutionException e) {
+            failures.incrementAndGet();
+            result.completeExceptionally(e);
+        }
+    }
+
+    private synchronized boolean withdraw() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        return true;
+    }
+
+    // Full jitter: uniform in [0, capped exponential delay]
+    private long backoff(int attempt) {
+        long delay = baseDelayNanos << Math.min(attempt - 1, 30);
+        if (delay <= 0 || delay > maxDelayNanos) {
+            delay = maxDelayNanos;
+        }
+        return ThreadLocalRandom.current().nextLong(delay + 1);
+    }
+
+    // Shared timer thread, it only hands the next attempt to the executor and never runs the call itself
+    private static class Scheduler {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "retry-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
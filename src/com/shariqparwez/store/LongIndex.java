@@ -0,0 +1,83 @@
+package com.shariqparwez.store;
+
+import java.util.Arrays;
+
+// Open addressing map from a long id to a non-negative long offset, with no boxing and two arrays in total.
+// Not thread safe, guarded by the owning store
+class LongIndex {
+    private static final long ABSENT = -1;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+
+    LongIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize / 3 * 4) * 2 - 1);
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Offset stored for the id, or -1 if none
+    long get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            if (values[slot] == ABSENT) {
+                return ABSENT;
+            }
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+    }
+
+    // Returns false and keeps the existing offset if the id is already present
+    boolean putIfAbsent(long key, long value) {
+        // Resized at three quarters full, keeps the probe sequences short and the arrays small
+        if (size + 1 > keys.length / 4 * 3) {
+            resize();
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            if (values[slot] == ABSENT) {
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+                return true;
+            }
+            if (keys[slot] == key) {
+                return false;
+            }
+        }
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != ABSENT) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != ABSENT) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(values, ABSENT);
+        mask = capacity - 1;
+    }
+
+    // Sequential ids would cluster without mixing the bits first
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
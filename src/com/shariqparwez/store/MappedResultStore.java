@@ -0,0 +1,216 @@
+package com.shariqparwez.store;
+
+import com.shariqparwez.model.Email;
+import com.shariqparwez.model.EmailBatch;
+import com.shariqparwez.model.IdBatch;
+import com.shariqparwez.model.User;
+import com.shariqparwez.model.UserBatch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Persistence stage for pipeline outputs: fetched users and emails appended to a memory-mapped file.
+//
+// Every record is 16 bytes: the id, the record kind, and a commit marker written last. Records are put
+// straight into the mapped region, there is no intermediate buffer nor write call, and the region is
+// remapped twice as large when full. Opening an existing file scans the records up to the first one
+// without a marker (a torn write) and rebuilds the id -> offset index, so a restarted job can ask for the
+// ids it has not stored yet. Records reach the disk when the OS writes the pages back, or on force()/close().
+public class MappedResultStore implements AutoCloseable {
+    private static final int RECORD_BYTES = 16;
+    private static final int KIND_OFFSET = 8;
+    private static final int MARKER_OFFSET = 15;
+    private static final byte USER = 1;
+    private static final byte EMAIL = 2;
+    private static final byte COMMITTED = 1;
+    private static final int DEFAULT_INITIAL_RECORDS = 64 * 1024;
+    private static final int INITIAL_INDEX_SIZE = 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final LongIndex users;
+    private final LongIndex emails;
+    private final int recovered;
+
+    // Guarded by 'this'
+    private MappedByteBuffer region;
+    private int position;
+
+    private MappedResultStore(Path file, int initialRecords) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), (long) initialRecords * RECORD_BYTES);
+        this.region = map(size);
+        this.users = new LongIndex(INITIAL_INDEX_SIZE);
+        this.emails = new LongIndex(INITIAL_INDEX_SIZE);
+        this.recovered = recover();
+    }
+
+    public static MappedResultStore open(Path file) throws IOException {
+        return new MappedResultStore(file, DEFAULT_INITIAL_RECORDS);
+    }
+
+    // Room for 'initialRecords' before the first remap, the file grows to that size right away
+    public static MappedResultStore open(Path file, int initialRecords) throws IOException {
+        return new MappedResultStore(file, initialRecords);
+    }
+
+    // Returns false if a user with this id is already stored
+    public boolean append(User user) {
+        return append(USER, user.getId());
+    }
+
+    public boolean append(Email email) {
+        return append(EMAIL, email.getId());
+    }
+
+    // Appends the id column as is, no User object is created. Returns the number of records added
+    public synchronized int appendAll(UserBatch batch) {
+        int added = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (append(USER, batch.getId(i))) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    public synchronized int appendAll(EmailBatch batch) {
+        int added = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (append(EMAIL, batch.getId(i))) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    public synchronized boolean containsUser(long id) {
+        return users.get(id) >= 0;
+    }
+
+    public synchronized boolean containsEmail(long id) {
+        return emails.get(id) >= 0;
+    }
+
+    // File offset of the user's record, or -1 if it is not stored
+    public synchronized long offsetOfUser(long id) {
+        return users.get(id);
+    }
+
+    public synchronized long offsetOfEmail(long id) {
+        return emails.get(id);
+    }
+
+    // User read back from the file, or null if it is not stored
+    public synchronized User getUser(long id) {
+        long offset = users.get(id);
+        return offset < 0 ? null : new User(region.getLong((int) offset));
+    }
+
+    public synchronized Email getEmail(long id) {
+        long offset = emails.get(id);
+        return offset < 0 ? null : new Email(region.getLong((int) offset));
+    }
+
+    // Ids of the batch without a stored user, what a restarted job still has to fetch
+    public synchronized IdBatch remainingUsers(IdBatch ids) {
+        return remaining(ids, users);
+    }
+
+    public synchronized IdBatch remainingEmails(IdBatch ids) {
+        return remaining(ids, emails);
+    }
+
+    // Number of records in the file
+    public synchronized int size() {
+        return position / RECORD_BYTES;
+    }
+
+    // Records found in the file when it was opened
+    public int getRecoveredCount() {
+        return recovered;
+    }
+
+    // Writes the dirty pages of the file back to the disk
+    public synchronized void force() {
+        region.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        region.force();
+        channel.close();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MappedResultStore [file=" + file + ", records=" + size() + ", users=" + users.size()
+                + ", emails=" + emails.size() + ", recovered=" + recovered + "]";
+    }
+
+    private synchronized boolean append(byte kind, long id) {
+        LongIndex index = kind == USER ? users : emails;
+        if (index.get(id) >= 0) {
+            return false;
+        }
+        if (position + RECORD_BYTES > region.capacity()) {
+            grow();
+        }
+        region.putLong(position, id);
+        region.put(position + KIND_OFFSET, kind);
+        // Marker last, a record cut short by a crash is not taken for a complete one on recovery
+        region.put(position + MARKER_OFFSET, COMMITTED);
+        index.putIfAbsent(id, position);
+        position += RECORD_BYTES;
+        return true;
+    }
+
+    private int recover() {
+        int count = 0;
+        // A torn record is left where it is, the next append overwrites it marker last
+        while (position + RECORD_BYTES <= region.capacity()
+                && region.get(position + MARKER_OFFSET) == COMMITTED) {
+            long id = region.getLong(position);
+            LongIndex index = region.get(position + KIND_OFFSET) == USER ? users : emails;
+            index.putIfAbsent(id, position);
+            position += RECORD_BYTES;
+            count++;
+        }
+        return count;
+    }
+
+    private void grow() {
+        long size = (long) region.capacity() * 2;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Store is full: " + file);
+        }
+        region = map(size);
+    }
+
+    private MappedByteBuffer map(long size) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static IdBatch remaining(IdBatch ids, LongIndex index) {
+        long[] missing = new long[ids.size()];
+        int count = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            long id = ids.get(i);
+            if (index.get(id) < 0) {
+                missing[count++] = id;
+            }
+        }
+        return IdBatch.wrap(count == missing.length ? missing : Arrays.copyOf(missing, count));
+    }
+}
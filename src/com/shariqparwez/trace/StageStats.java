@@ -0,0 +1,78 @@
+package com.shariqparwez.trace;
+
+import com.shariqparwez.executor.LatencyHistogram;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Wait time, run time, executors and threads recorded for one named pipeline stage
+public class StageStats {
+    private final String stage;
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+    private final Set<String> executors = ConcurrentHashMap.newKeySet();
+    private final Map<String, LongAdder> threads = new ConcurrentHashMap<>();
+
+    StageStats(String stage) {
+        this.stage = stage;
+    }
+
+    void recordExecutor(String executor) {
+        executors.add(executor);
+    }
+
+    void recordWait(long nanos) {
+        waitTime.record(nanos);
+    }
+
+    void recordRun(long nanos) {
+        runTime.record(nanos);
+        String thread = Thread.currentThread().getName();
+        LongAdder runs = threads.get(thread);
+        if (runs == null) {
+            runs = threads.computeIfAbsent(thread, name -> new LongAdder());
+        }
+        runs.increment();
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    // Time between handing the stage to its executor and the stage starting, only known for traced executors
+    public LatencyHistogram getWaitTime() {
+        return waitTime;
+    }
+
+    public LatencyHistogram getRunTime() {
+        return runTime;
+    }
+
+    public Set<String> getExecutors() {
+        return new TreeSet<>(executors);
+    }
+
+    // Number of runs per thread name
+    public Map<String, Long> getThreads() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        threads.forEach((thread, runs) -> snapshot.put(thread, runs.sum()));
+        return snapshot;
+    }
+
+    void reset() {
+        waitTime.reset();
+        runTime.reset();
+        executors.clear();
+        threads.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "StageStats [stage=" + stage + ", executors=" + getExecutors() + ", threads=" + threads.size()
+                + ", wait: " + waitTime + ", run: " + runTime + "]";
+    }
+}
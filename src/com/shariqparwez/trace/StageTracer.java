@@ -0,0 +1,204 @@
+package com.shariqparwez.trace;
+
+import com.shariqparwez.executor.InstrumentedExecutor;
+import com.shariqparwez.executor.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Stage level tracing for CompletableFuture chains, in place of "Running in <thread>" printlns.
+//
+// Wrap the executor of an async stage, or the task of a stage which runs in the completing thread:
+//   supplyAsync(supplyIDs, StageTracer.executor("supply", executor)).thenApply(StageTracer.function("fetch", f))
+// A traced executor records how long the stage waited for a thread, its run time and thread; a traced task
+// records run time and thread only. Wrap one or the other for a stage, not both.
+//
+// Everything goes to lock-free histograms keyed by stage name, exported with toJson() or toPrometheus().
+// Tracing is off unless -Dstage.trace.enabled=true (or setEnabled(true)); the wrappers then return the
+// executor or task unchanged, so a disabled tracer costs nothing per task.
+public class StageTracer {
+    private static final Map<String, StageStats> STAGES = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = Boolean.getBoolean("stage.trace.enabled");
+
+    private StageTracer() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Only affects stages wrapped afterwards
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    public static Executor executor(String stage, Executor executor) {
+        if (!enabled) {
+            return executor;
+        }
+        StageStats stats = stats(stage);
+        stats.recordExecutor(executor instanceof InstrumentedExecutor
+                ? ((InstrumentedExecutor) executor).getName()
+                : executor.getClass().getSimpleName());
+        return command -> {
+            long queuedAt = System.nanoTime();
+            executor.execute(() -> {
+                long startedAt = System.nanoTime();
+                stats.recordWait(startedAt - queuedAt);
+                try {
+                    command.run();
+                } finally {
+                    stats.recordRun(System.nanoTime() - startedAt);
+                }
+            });
+        };
+    }
+
+    // Task wrappers, for stages which run in the completing thread or on an executor which is not traced
+    public static <T> Supplier<T> supplier(String stage, Supplier<T> supplier) {
+        if (!enabled) {
+            return supplier;
+        }
+        StageStats stats = stats(stage);
+        return () -> {
+            long startedAt = System.nanoTime();
+            try {
+                return supplier.get();
+            } finally {
+                stats.recordRun(System.nanoTime() - startedAt);
+            }
+        };
+    }
+
+    public static <T, R> Function<T, R> function(String stage, Function<T, R> function) {
+        if (!enabled) {
+            return function;
+        }
+        StageStats stats = stats(stage);
+        return value -> {
+            long startedAt = System.nanoTime();
+            try {
+                return function.apply(value);
+            } finally {
+                stats.recordRun(System.nanoTime() - startedAt);
+            }
+        };
+    }
+
+    public static <T> Consumer<T> consumer(String stage, Consumer<T> consumer) {
+        if (!enabled) {
+            return consumer;
+        }
+        StageStats stats = stats(stage);
+        return value -> {
+            long startedAt = System.nanoTime();
+            try {
+                consumer.accept(value);
+            } finally {
+                stats.recordRun(System.nanoTime() - startedAt);
+            }
+        };
+    }
+
+    public static List<StageStats> stages() {
+        List<StageStats> stages = new ArrayList<>(STAGES.values());
+        stages.sort((one, two) -> one.getStage().compareTo(two.getStage()));
+        return stages;
+    }
+
+    public static void reset() {
+        STAGES.values().forEach(StageStats::reset);
+    }
+
+    public static String toJson() {
+        StringBuilder json = new StringBuilder("{\"stages\":[");
+        List<StageStats> stages = stages();
+        for (int i = 0; i < stages.size(); i++) {
+            StageStats stats = stages.get(i);
+            json.append(i == 0 ? "" : ",").append("{\"stage\":").append(quote(stats.getStage()));
+            json.append(",\"executors\":[");
+            String separator = "";
+            for (String executor : stats.getExecutors()) {
+                json.append(separator).append(quote(executor));
+                separator = ",";
+            }
+            json.append("],\"threads\":{");
+            separator = "";
+            for (Map.Entry<String, Long> thread : stats.getThreads().entrySet()) {
+                json.append(separator).append(quote(thread.getKey())).append(':').append(thread.getValue());
+                separator = ",";
+            }
+            json.append("},\"wait\":");
+            appendJson(json, stats.getWaitTime());
+            json.append(",\"run\":");
+            appendJson(json, stats.getRunTime());
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    // Prometheus text exposition format, histograms as summaries in seconds
+    public static String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        List<StageStats> stages = stages();
+        appendSummary(text, "pipeline_stage_wait_seconds", "Time a stage waited for a thread", stages, true);
+        appendSummary(text, "pipeline_stage_run_seconds", "Time a stage ran", stages, false);
+        text.append("# HELP pipeline_stage_threads Distinct threads which ran a stage\n");
+        text.append("# TYPE pipeline_stage_threads gauge\n");
+        for (StageStats stats : stages) {
+            text.append("pipeline_stage_threads{stage=").append(quote(stats.getStage())).append("} ")
+                    .append(stats.getThreads().size()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static StageStats stats(String stage) {
+        StageStats stats = STAGES.get(stage);
+        return stats != null ? stats : STAGES.computeIfAbsent(stage, StageStats::new);
+    }
+
+    private static void appendJson(StringBuilder json, LatencyHistogram histogram) {
+        json.append("{\"count\":").append(histogram.getCount())
+                .append(",\"meanMicros\":")
+                .append(String.format(Locale.ROOT, "%.1f", histogram.getMean(TimeUnit.MICROSECONDS)))
+                .append(",\"p50Micros\":").append(histogram.getPercentile(50, TimeUnit.MICROSECONDS))
+                .append(",\"p99Micros\":").append(histogram.getPercentile(99, TimeUnit.MICROSECONDS))
+                .append(",\"maxMicros\":").append(histogram.getMax(TimeUnit.MICROSECONDS))
+                .append('}');
+    }
+
+    private static void appendSummary(StringBuilder text, String metric, String help, List<StageStats> stages,
+                                      boolean wait) {
+        text.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(metric).append(" summary\n");
+        for (StageStats stats : stages) {
+            LatencyHistogram histogram = wait ? stats.getWaitTime() : stats.getRunTime();
+            if (wait && histogram.getCount() == 0) {
+                // Stage traced by task only, its wait time is unknown rather than zero
+                continue;
+            }
+            String stage = "stage=" + quote(stats.getStage());
+            for (double quantile : new double[] {0.5, 0.9, 0.99}) {
+                text.append(metric).append('{').append(stage).append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(histogram.getPercentile(quantile * 100, TimeUnit.NANOSECONDS) / 1e9).append('\n');
+            }
+            text.append(metric).append("_sum{").append(stage).append("} ")
+                    .append(histogram.getSum(TimeUnit.SECONDS)).append('\n');
+            text.append(metric).append("_count{").append(stage).append("} ")
+                    .append(histogram.getCount()).append('\n');
+        }
+    }
+
+    // Same escaping rules for JSON strings and Prometheus label values
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+}